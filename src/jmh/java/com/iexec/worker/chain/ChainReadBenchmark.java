@@ -0,0 +1,107 @@
+package com.iexec.worker.chain;
+
+import com.iexec.common.chain.ChainContribution;
+import com.iexec.common.chain.ChainTask;
+import com.iexec.common.chain.ChainUtils;
+import com.iexec.common.contract.generated.IexecHubABILegacy;
+import org.openjdk.jmh.annotations.*;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.web3j.utils.Numeric.cleanHexPrefix;
+
+/*
+ * Cost of a task (or contribution) read on the worker side, the node being a stub answering right away:
+ * through the contract wrapper (encoding, call, decoding into the tuple then the ChainTask), as a raw call of
+ * the same selector without any decoding (what a hand written selector/decoder path could at best get down
+ * to), and from the cache of completed tasks.
+ * The node answers zero words, which any layout of the results decodes to empty arrays: a lower bound of the
+ * decoding of a real task.
+ * ./gradlew jmh
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ChainReadBenchmark {
+
+    private static final String PRIVATE_KEY = "0x2a46e8c1535792f6689b10d5c882c9363910c30751ec193ae71ec71630077909";
+    private static final String HUB_ADDRESS = "0x60e25c038d70a15364dac11a042db1dd7a2cccbc";
+    private static final String CHAIN_TASK_ID = "0xd94b63fc2d3ec4b96daf84b403bbafdc8c8517e8e2addd51fec0fa4e67801be8";
+    // more words than any of the read results
+    private static final int RESULT_WORDS = 32;
+
+    private Credentials credentials;
+    private Web3j web3j;
+    private IexecHubABILegacy iexecHub;
+    private String viewTaskData;
+    private Map<String, ChainTask> completedChainTasks;
+
+    @Setup
+    public void setUp() {
+        StringBuilder result = new StringBuilder("0x");
+        for (int i = 0; i < RESULT_WORDS * 64; i++) {
+            result.append('0');
+        }
+        credentials = Credentials.create(PRIVATE_KEY);
+        web3j = Web3j.build(new StubNode(result.toString()));
+        iexecHub = ChainUtils.loadHubContract(credentials, web3j, HUB_ADDRESS);
+        viewTaskData = Hash.sha3String("viewTaskABILegacy(bytes32)").substring(0, 10) + cleanHexPrefix(CHAIN_TASK_ID);
+        completedChainTasks = IexecHubService.newChainCache();
+        ChainUtils.getChainTask(iexecHub, CHAIN_TASK_ID).ifPresent(task -> completedChainTasks.put(CHAIN_TASK_ID, task));
+    }
+
+    @TearDown
+    public void tearDown() {
+        web3j.shutdown();
+    }
+
+    @Benchmark
+    public Optional<ChainTask> wrapperTaskRead() {
+        return ChainUtils.getChainTask(iexecHub, CHAIN_TASK_ID);
+    }
+
+    @Benchmark
+    public Optional<ChainContribution> wrapperContributionRead() {
+        return ChainUtils.getChainContribution(iexecHub, CHAIN_TASK_ID, credentials.getAddress());
+    }
+
+    @Benchmark
+    public String rawTaskCall() throws IOException {
+        return web3j.ethCall(Transaction.createEthCallTransaction(credentials.getAddress(), HUB_ADDRESS,
+                viewTaskData), DefaultBlockParameterName.LATEST).send().getValue();
+    }
+
+    @Benchmark
+    public Optional<ChainTask> cachedTaskRead() {
+        return IexecHubService.getCached(completedChainTasks, CHAIN_TASK_ID,
+                () -> ChainUtils.getChainTask(iexecHub, CHAIN_TASK_ID));
+    }
+
+    // answers every request with the same result
+    private static class StubNode extends HttpService {
+
+        private final byte[] response;
+
+        StubNode(String result) {
+            this.response = ("{\"jsonrpc\":\"2.0\",\"id\":0,\"result\":\"" + result + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected InputStream performIO(String payload) {
+            return new ByteArrayInputStream(response);
+        }
+    }
+}
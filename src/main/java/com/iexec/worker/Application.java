@@ -2,7 +2,6 @@ package com.iexec.worker;
 
 
 import com.iexec.common.config.WorkerConfigurationModel;
-import com.iexec.worker.chain.CredentialsService;
 import com.iexec.worker.chain.IexecHubService;
 import com.iexec.worker.config.WorkerConfigurationService;
 import com.iexec.worker.feign.CustomFeignClient;
@@ -35,9 +34,6 @@ public class Application implements CommandLineRunner {
     @Autowired
     private WorkerConfigurationService workerConfig;
 
-    @Autowired
-    private CredentialsService credentialsService;
-
     @Autowired
     private CustomFeignClient feignClient;
 
@@ -56,14 +52,7 @@ public class Application implements CommandLineRunner {
 
     @Override
     public void run(String... args) {
-        String workerAddress = credentialsService.getCredentials().getAddress();
-        WorkerConfigurationModel model = WorkerConfigurationModel.builder()
-                .name(workerConfig.getWorkerName())
-                .walletAddress(workerAddress)
-                .os(workerConfig.getOS())
-                .cpu(workerConfig.getCPU())
-                .cpuNb(workerConfig.getNbCPU())
-                .build();
+        WorkerConfigurationModel model = workerConfig.getWorkerConfigurationModel();
 
 
         log.info("Number of tasks that can run in parallel on this machine [tasks:{}]", workerConfig.getNbCPU() / 2);
@@ -82,5 +71,6 @@ public class Application implements CommandLineRunner {
         for (String chainTaskId : resultService.getAllChainTaskIdsInResultFolder()) {
             resultService.removeResult(chainTaskId);
         }
+        resultService.pruneResultBlobs();
     }
 }
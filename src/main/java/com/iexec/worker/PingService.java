@@ -1,28 +1,48 @@
 package com.iexec.worker;
 
 import com.iexec.worker.config.CoreConfigurationService;
+import com.iexec.worker.config.WorkerConfigurationService;
 import com.iexec.worker.feign.CustomFeignClient;
+import com.iexec.worker.utils.PeriodicJob;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 @Slf4j
 @Service
 public class PingService {
 
     private CustomFeignClient feignClient;
     private CoreConfigurationService coreConfigurationService;
-    private RestartService restartService;
+    private SessionRecoveryService sessionRecoveryService;
+    // own thread: liveness must not wait for the replicate demands (blocked on the chain when it is slow)
+    private PeriodicJob pingJob;
 
     public PingService(CustomFeignClient feignClient,
                        CoreConfigurationService coreConfigurationService,
-                       RestartService restartService) {
+                       SessionRecoveryService sessionRecoveryService,
+                       WorkerConfigurationService workerConfigurationService,
+                       MeterRegistry meterRegistry) {
         this.feignClient = feignClient;
         this.coreConfigurationService = coreConfigurationService;
-        this.restartService = restartService;
+        this.sessionRecoveryService = sessionRecoveryService;
+        this.pingJob = new PeriodicJob("ping", workerConfigurationService.getPingPeriod(), this::pingScheduler,
+                meterRegistry);
+    }
+
+    @PostConstruct
+    void run() {
+        pingJob.start();
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        pingJob.stop();
     }
 
-    @Scheduled(fixedRate = 10000)
     public void pingScheduler() {
         log.debug("Send ping to scheduler");
         String sessionId = feignClient.ping();
@@ -32,10 +52,14 @@ public class PingService {
             return;
         }
 
-        if (sessionId != null && !sessionId.equalsIgnoreCase(currentSessionId)){
-            // need to reconnect to the core by restarting the worker
-            log.warn("Scheduler seems to have restarted, the worker will restart now!");
-            restartService.restartApp();
+        // an empty session id is a failed ping, not a new session
+        if (sessionId != null && !sessionId.isEmpty() && !sessionId.equalsIgnoreCase(currentSessionId)){
+            log.warn("Scheduler seems to have restarted, recovering the session [previousSessionId:{}, sessionId:{}]",
+                    currentSessionId, sessionId);
+            // the session id is only updated once recovered, the next ping tries again otherwise
+            if (sessionRecoveryService.recoverSession()) {
+                coreConfigurationService.setCoreSessionId(sessionId);
+            }
         }
     }
 }
@@ -0,0 +1,72 @@
+package com.iexec.worker;
+
+import com.iexec.worker.config.PublicConfigurationService;
+import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.feign.CoreTokenManager;
+import com.iexec.worker.feign.CustomFeignClient;
+import com.iexec.worker.pubsub.SubscriptionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/*
+ * Joins a restarted core (new session id) without restarting the worker, so that the computations in
+ * progress and the state of their replicates are kept: new login, new registration, refreshed configuration,
+ * and the in-flight replicates are reconciled with the tasks the core has in progress and with the chain
+ * (see SubscriptionService.reconcileWithCore).
+ * The STOMP subscriptions are restored by the SubscriptionService when its connection is re-established.
+ * The worker is only restarted if the core now points to another chain, contracts or scheduler.
+ * */
+@Slf4j
+@Service
+public class SessionRecoveryService {
+
+    private CustomFeignClient feignClient;
+    private CoreTokenManager coreTokenManager;
+    private PublicConfigurationService publicConfigurationService;
+    private WorkerConfigurationService workerConfigurationService;
+    private SubscriptionService subscriptionService;
+    private RestartService restartService;
+
+    public SessionRecoveryService(CustomFeignClient feignClient,
+                                  CoreTokenManager coreTokenManager,
+                                  PublicConfigurationService publicConfigurationService,
+                                  WorkerConfigurationService workerConfigurationService,
+                                  SubscriptionService subscriptionService,
+                                  RestartService restartService) {
+        this.feignClient = feignClient;
+        this.coreTokenManager = coreTokenManager;
+        this.publicConfigurationService = publicConfigurationService;
+        this.workerConfigurationService = workerConfigurationService;
+        this.subscriptionService = subscriptionService;
+        this.restartService = restartService;
+    }
+
+    // false if the session has not been recovered, to be tried again later
+    public boolean recoverSession() {
+        // the token of the previous session may not be accepted anymore
+        coreTokenManager.expireToken();
+
+        if (!publicConfigurationService.refresh()) {
+            log.warn("Configuration of the core has changed, the worker will restart now");
+            restartService.restartApp();
+            return false;
+        }
+
+        if (!feignClient.registerWorker(workerConfigurationService.getWorkerConfigurationModel())) {
+            log.warn("Failed to register the worker to the restarted core, will retry");
+            return false;
+        }
+
+        List<String> chainTaskIdsInProgress = feignClient.getTasksInProgress();
+        if (chainTaskIdsInProgress == null) {
+            // replicates would be aborted as dropped by the core
+            log.warn("Failed to get the tasks in progress of the restarted core, will retry");
+            return false;
+        }
+        subscriptionService.reconcileWithCore(chainTaskIdsInProgress);
+        log.info("Session with the core recovered");
+        return true;
+    }
+}
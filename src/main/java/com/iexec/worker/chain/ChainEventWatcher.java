@@ -0,0 +1,182 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.web3j.utils.Numeric.cleanHexPrefix;
+
+/*
+ * Watches the TaskConsensus, TaskReveal and TaskFinalize events of the IexecHub through a single log filter
+ * (one eth_getLogs per new block range) and forwards them to the listener, so replicates move forward even
+ * if a core notification is lost.
+ * The filter is not restricted to our tasks: unknown tasks are dropped by the listener. A block range is
+ * only marked as seen once its logs have been fetched, so a failed query is retried on the next poll.
+ * An endpoint returns no log, and no error, for the blocks it has not imported yet: the logs are fetched
+ * from the endpoint whose block height has just been read, and only up to that height (the head pushed by
+ * another node, or reached by another endpoint, only triggers the poll). The blocks the endpoint has not
+ * reached yet are fetched again shortly. Long ranges (e.g. after an outage) are fetched in chunks.
+ * */
+@Slf4j
+@Service
+public class ChainEventWatcher {
+
+    // blocks per eth_getLogs, nodes reject or truncate larger ranges
+    static final long MAX_BLOCK_RANGE = 1000;
+    // ms, a pushed head is often ahead of the HTTP endpoints by a few hundred ms
+    private static final long LAGGING_ENDPOINT_RETRY_DELAY = 1000;
+
+    private IexecHubService iexecHubService;
+    private ChainHeadTracker chainHeadTracker;
+    private ChainTaskEventListener listener;
+    private long pollingPeriod;
+    private ScheduledExecutorService executor;
+    private long lastBlockNumber;
+    private boolean isRetryScheduled;
+
+    public ChainEventWatcher(IexecHubService iexecHubService,
+                             ChainHeadTracker chainHeadTracker,
+                             ChainTaskEventListener listener,
+                             WorkerConfigurationService workerConfigurationService) {
+        this.iexecHubService = iexecHubService;
+        this.chainHeadTracker = chainHeadTracker;
+        this.listener = listener;
+        this.pollingPeriod = workerConfigurationService.getChainEventPollingPeriod();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.lastBlockNumber = -1;
+    }
+
+    @PostConstruct
+    void run() {
+        executor.scheduleWithFixedDelay(this::poll, 0, pollingPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        executor.shutdownNow();
+    }
+
+    // new blocks have been pushed, their events are fetched without waiting for the next poll
+    void pollNow() {
+        executor.execute(this::poll);
+    }
+
+    void poll() {
+        try {
+            long headBlockNumber = chainHeadTracker.getHeadBlockNumber();
+            if (headBlockNumber == 0) {
+                // head not known yet
+                return;
+            }
+            if (lastBlockNumber < 0) {
+                // start watching from the current head
+                lastBlockNumber = headBlockNumber - 1;
+            }
+            if (headBlockNumber <= lastBlockNumber) {
+                return;
+            }
+            long endpointBlockNumber = RpcEndpointPool.pinned(this::fetchNewEvents);
+            if (endpointBlockNumber >= 0 && endpointBlockNumber < headBlockNumber && !isRetryScheduled) {
+                // the rest of the range is fetched once the endpoint has imported it
+                isRetryScheduled = true;
+                executor.schedule(() -> {
+                    isRetryScheduled = false;
+                    poll();
+                }, LAGGING_ENDPOINT_RETRY_DELAY, TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            log.error("Failed to poll chain events [exception:{}]", e.getMessage());
+        }
+    }
+
+    // pinned to a single endpoint, returns its block height (-1 if unknown)
+    private long fetchNewEvents() {
+        long endpointBlockNumber = -1;
+        try {
+            endpointBlockNumber = iexecHubService.getWeb3j().ethBlockNumber().send().getBlockNumber()
+                    .longValue();
+            while (lastBlockNumber < endpointBlockNumber) {
+                long fromBlock = lastBlockNumber + 1;
+                long toBlock = Math.min(endpointBlockNumber, lastBlockNumber + MAX_BLOCK_RANGE);
+                EthLog ethLog = iexecHubService.getWeb3j().ethGetLogs(buildFilter(fromBlock, toBlock)).send();
+                if (ethLog.hasError()) {
+                    log.warn("Failed to get chain events, will retry [fromBlock:{}, toBlock:{}, error:{}]",
+                            fromBlock, toBlock, ethLog.getError().getMessage());
+                    return -1;
+                }
+                for (EthLog.LogResult logResult : ethLog.getLogs()) {
+                    if (logResult instanceof EthLog.LogObject) {
+                        toChainTaskEvent(((EthLog.LogObject) logResult).get()).ifPresent(this::publish);
+                    }
+                }
+                lastBlockNumber = toBlock;
+            }
+        } catch (Exception e) {
+            log.error("Failed to get chain events [fromBlock:{}, exception:{}]", lastBlockNumber + 1, e.getMessage());
+            return -1;
+        }
+        return endpointBlockNumber;
+    }
+
+    /*
+     * Block ranges are queried with eth_getLogs rather than through an installed filter: filters live on a
+     * single node and the requests may be routed to any of the RPC endpoints.
+     * */
+    private EthFilter buildFilter(long fromBlock, long toBlock) {
+        EthFilter ethFilter = new EthFilter(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(fromBlock)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(toBlock)),
+                iexecHubService.getHubAddress());
+        // topic 0 is any of the watched events
+        ethFilter.addOptionalTopics(ChainTaskEventType.CONSENSUS.getTopic(),
+                ChainTaskEventType.REVEAL.getTopic(),
+                ChainTaskEventType.FINALIZE.getTopic());
+        return ethFilter;
+    }
+
+    private void publish(ChainTaskEvent event) {
+        try {
+            listener.onChainTaskEvent(event);
+        } catch (Exception e) {
+            log.error("Failed to handle chain event [event:{}, exception:{}]", event, e.getMessage());
+        }
+    }
+
+    static Optional<ChainTaskEvent> toChainTaskEvent(Log eventLog) {
+        List<String> topics = eventLog.getTopics();
+        if (topics == null || topics.size() < 2) {
+            return Optional.empty();
+        }
+        ChainTaskEventType type = ChainTaskEventType.fromTopic(topics.get(0));
+        if (type == null) {
+            return Optional.empty();
+        }
+
+        String workerAddress = null;
+        if (type.equals(ChainTaskEventType.REVEAL) && topics.size() > 2) {
+            // indexed address is left padded to 32 bytes
+            String paddedAddress = cleanHexPrefix(topics.get(2));
+            workerAddress = "0x" + paddedAddress.substring(paddedAddress.length() - 40);
+        }
+
+        return Optional.of(ChainTaskEvent.builder()
+                .chainTaskId(topics.get(1))
+                .type(type)
+                .workerAddress(workerAddress)
+                .blockNumber(eventLog.getBlockNumber() != null ? eventLog.getBlockNumber().longValue() : 0)
+                .build());
+    }
+}
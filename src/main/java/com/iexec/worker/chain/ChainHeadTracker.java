@@ -0,0 +1,140 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/*
+ * Follows the head of the chain with a single poller so that callers don't have to request the last block
+ * themselves. The chain time (in ms, like on-chain deadlines) is the timestamp of the head block, moved
+ * forward with the time elapsed since it has been seen; the local clock is only used before the first head.
+ * Heads pushed by the ChainPushClient make the poll unnecessary, it is skipped while they keep coming.
+ * Head listeners are called with the number of each new head, on the thread that has seen it: they must not
+ * block.
+ * */
+@Slf4j
+@Service
+public class ChainHeadTracker {
+
+    private Web3jService web3jService;
+    private long pollingPeriod;
+    private ScheduledExecutorService executor;
+    private volatile Head head;
+    private volatile long lastPushTime;
+    private List<LongConsumer> headListeners;
+
+    public ChainHeadTracker(Web3jService web3jService,
+                            WorkerConfigurationService workerConfigurationService) {
+        this.web3jService = web3jService;
+        this.pollingPeriod = workerConfigurationService.getChainHeadPollingPeriod();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.headListeners = new CopyOnWriteArrayList<>();
+    }
+
+    @PostConstruct
+    void run() {
+        executor.scheduleWithFixedDelay(this::poll, 0, pollingPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        executor.shutdownNow();
+    }
+
+    public void addHeadListener(LongConsumer headListener) {
+        headListeners.add(headListener);
+    }
+
+    public long getHeadBlockNumber() {
+        Head current = getHead();
+        return current != null ? current.getNumber() : 0;
+    }
+
+    public long getChainTime() {
+        Head current = getHead();
+        if (current == null) {
+            return System.currentTimeMillis();
+        }
+        return current.getTimestamp() + (System.currentTimeMillis() - current.getObservedAt());
+    }
+
+    // local time (ms) at which the chain will reach the given chain time
+    public long toLocalTime(long chainTime) {
+        return System.currentTimeMillis() + (chainTime - getChainTime());
+    }
+
+    // timestamp in ms
+    void onNewHead(long number, long timestamp) {
+        lastPushTime = System.currentTimeMillis();
+        updateHead(number, timestamp);
+    }
+
+    void poll() {
+        if (System.currentTimeMillis() - lastPushTime < pollingPeriod) {
+            return;
+        }
+        refresh();
+    }
+
+    void refresh() {
+        try {
+            EthBlock.Block block = web3jService.getWeb3j()
+                    .ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false).send().getBlock();
+            if (block == null) {
+                return;
+            }
+            updateHead(block.getNumber().longValue(), block.getTimestamp().longValue() * 1000);
+        } catch (Exception e) {
+            log.error("Failed to get chain head [exception:{}]", e.getMessage());
+        }
+    }
+
+    private void updateHead(long number, long timestamp) {
+        synchronized (this) {
+            Head current = head;
+            if (current != null && number <= current.getNumber()) {
+                return;
+            }
+            head = new Head(number, timestamp, System.currentTimeMillis());
+        }
+        log.debug("New chain head [number:{}, timestamp:{}]", number, timestamp);
+        for (LongConsumer headListener : headListeners) {
+            try {
+                headListener.accept(number);
+            } catch (RuntimeException e) {
+                log.error("Chain head listener failed [number:{}, exception:{}]", number, e.getMessage());
+            }
+        }
+    }
+
+    private Head getHead() {
+        if (head == null) {
+            // not polled yet
+            refresh();
+        }
+        return head;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Head {
+        private long number;
+        // ms
+        private long timestamp;
+        // local time when the head has been seen
+        private long observedAt;
+    }
+}
@@ -0,0 +1,199 @@
+package com.iexec.worker.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.utils.ReconnectBackoff;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.web3j.utils.Numeric.cleanHexPrefix;
+
+/*
+ * Optional persistent connection to the node (worker.blockchain.wsUrl) on which new heads and the IexecHub
+ * logs are pushed (eth_subscribe) instead of waited for until the next poll: a pushed head is given to the
+ * ChainHeadTracker and wakes up the ChainEventWatcher, which then fetches the events of the new blocks.
+ * The polls remain as a fallback, they skip their work while heads are pushed. The connection is
+ * re-established with backoff when lost.
+ * Requests and transactions still go through the RPC endpoints (pooled HTTP connections with failover).
+ * */
+@Slf4j
+@Service
+public class ChainPushClient extends TextWebSocketHandler {
+
+    private static final long RECONNECT_INITIAL_DELAY = 1000;
+    private static final long RECONNECT_MAX_DELAY = 60000;
+    private static final long CONNECT_TIMEOUT = 10000;
+    private static final int NEW_HEADS_REQUEST_ID = 1;
+    private static final int LOGS_REQUEST_ID = 2;
+
+    private final String url;
+    private IexecHubService iexecHubService;
+    private ChainHeadTracker chainHeadTracker;
+    private ChainEventWatcher chainEventWatcher;
+    private ObjectMapper mapper;
+    private StandardWebSocketClient client;
+    private ScheduledExecutorService executor;
+    private ReconnectBackoff reconnectBackoff;
+    private volatile String newHeadsSubscription;
+    private volatile String logsSubscription;
+    private volatile WebSocketSession session;
+
+    public ChainPushClient(IexecHubService iexecHubService,
+                           ChainHeadTracker chainHeadTracker,
+                           ChainEventWatcher chainEventWatcher,
+                           WorkerConfigurationService workerConfigurationService) {
+        this.iexecHubService = iexecHubService;
+        this.chainHeadTracker = chainHeadTracker;
+        this.chainEventWatcher = chainEventWatcher;
+        this.url = workerConfigurationService.getBlockchainWsUrl();
+        this.mapper = new ObjectMapper();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.reconnectBackoff = new ReconnectBackoff(RECONNECT_INITIAL_DELAY, RECONNECT_MAX_DELAY);
+    }
+
+    @PostConstruct
+    void run() {
+        if (url.isEmpty()) {
+            log.info("No blockchain websocket configured, chain heads and events are polled");
+            return;
+        }
+        client = new StandardWebSocketClient();
+        executor.execute(this::connect);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        executor.shutdownNow();
+        WebSocketSession current = session;
+        if (current != null && current.isOpen()) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.warn("Failed to close blockchain websocket [exception:{}]", e.getMessage());
+            }
+        }
+    }
+
+    private void connect() {
+        log.info("Connecting blockchain websocket [url:{}, attempt:{}]", url, reconnectBackoff.getAttempts());
+        try {
+            client.doHandshake(this, url).get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Failed to connect blockchain websocket [url:{}, exception:{}]", url, e.getMessage());
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        long delay = reconnectBackoff.nextDelay();
+        if (delay < 0) {
+            // already pending
+            return;
+        }
+        executor.schedule(() -> {
+            reconnectBackoff.onReconnect();
+            connect();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        this.session = session;
+        reconnectBackoff.reset();
+        newHeadsSubscription = null;
+        logsSubscription = null;
+        session.sendMessage(new TextMessage(buildSubscribeRequest(NEW_HEADS_REQUEST_ID, "newHeads", null)));
+
+        ObjectNode logsFilter = mapper.createObjectNode();
+        logsFilter.put("address", iexecHubService.getHubAddress());
+        ArrayNode topics = logsFilter.putArray("topics");
+        // topic 0 is any of the watched events
+        ArrayNode eventTopics = topics.addArray();
+        eventTopics.add(ChainTaskEventType.CONSENSUS.getTopic());
+        eventTopics.add(ChainTaskEventType.REVEAL.getTopic());
+        eventTopics.add(ChainTaskEventType.FINALIZE.getTopic());
+        session.sendMessage(new TextMessage(buildSubscribeRequest(LOGS_REQUEST_ID, "logs", logsFilter)));
+        log.info("Blockchain websocket connected [url:{}]", url);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        JsonNode json = mapper.readTree(message.getPayload());
+        if (json.has("id")) {
+            onSubscribeResponse(json);
+            return;
+        }
+        JsonNode params = json.path("params");
+        String subscription = params.path("subscription").asText();
+        if (subscription.equals(newHeadsSubscription)) {
+            JsonNode header = params.path("result");
+            long number = Long.parseLong(cleanHexPrefix(header.path("number").asText()), 16);
+            long timestamp = Long.parseLong(cleanHexPrefix(header.path("timestamp").asText()), 16) * 1000;
+            chainHeadTracker.onNewHead(number, timestamp);
+            chainEventWatcher.pollNow();
+        } else if (subscription.equals(logsSubscription)) {
+            // the watcher fetches them over HTTP up to the height the endpoint has reached, the order of the pushes
+            // doesn't matter
+            chainEventWatcher.pollNow();
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("Blockchain websocket error [url:{}, exception:{}]", url, exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        this.session = null;
+        log.warn("Blockchain websocket closed, will reconnect [url:{}, status:{}]", url, status);
+        scheduleReconnect();
+    }
+
+    private void onSubscribeResponse(JsonNode json) {
+        if (json.has("error")) {
+            log.error("Blockchain websocket subscription failed, polling only [id:{}, error:{}]",
+                    json.path("id").asInt(), json.path("error").path("message").asText());
+            return;
+        }
+        String subscription = json.path("result").asText();
+        if (json.path("id").asInt() == NEW_HEADS_REQUEST_ID) {
+            newHeadsSubscription = subscription;
+        } else if (json.path("id").asInt() == LOGS_REQUEST_ID) {
+            logsSubscription = subscription;
+        }
+    }
+
+    private String buildSubscribeRequest(int id, String type, JsonNode filter) throws IOException {
+        ObjectNode request = mapper.createObjectNode();
+        request.put("jsonrpc", "2.0");
+        request.put("id", id);
+        request.put("method", "eth_subscribe");
+        ArrayNode params = request.putArray("params");
+        params.add(type);
+        if (filter != null) {
+            params.add(filter);
+        }
+        return mapper.writeValueAsString(request);
+    }
+}
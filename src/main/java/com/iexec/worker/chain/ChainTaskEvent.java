@@ -0,0 +1,20 @@
+package com.iexec.worker.chain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChainTaskEvent {
+
+    private String chainTaskId;
+    private ChainTaskEventType type;
+    // only set for TaskReveal events
+    private String workerAddress;
+    private long blockNumber;
+
+}
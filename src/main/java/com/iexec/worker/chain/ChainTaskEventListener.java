@@ -0,0 +1,6 @@
+package com.iexec.worker.chain;
+
+public interface ChainTaskEventListener {
+
+    void onChainTaskEvent(ChainTaskEvent event);
+}
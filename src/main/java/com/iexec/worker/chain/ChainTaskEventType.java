@@ -0,0 +1,29 @@
+package com.iexec.worker.chain;
+
+import org.web3j.crypto.Hash;
+
+public enum ChainTaskEventType {
+
+    CONSENSUS("TaskConsensus(bytes32,bytes32)"),
+    REVEAL("TaskReveal(bytes32,address,bytes32)"),
+    FINALIZE("TaskFinalize(bytes32,bytes)");
+
+    private final String topic;
+
+    ChainTaskEventType(String signature) {
+        this.topic = Hash.sha3String(signature);
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public static ChainTaskEventType fromTopic(String topic) {
+        for (ChainTaskEventType type : values()) {
+            if (type.topic.equalsIgnoreCase(topic)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -11,7 +11,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.web3j.crypto.Sign;
 
-import java.util.Date;
 import java.util.Optional;
 
 import static com.iexec.common.utils.BytesUtils.*;
@@ -21,9 +20,12 @@ import static com.iexec.common.utils.BytesUtils.*;
 public class ContributionService {
 
     private IexecHubService iexecHubService;
+    private ChainHeadTracker chainHeadTracker;
 
-    public ContributionService(IexecHubService iexecHubService) {
+    public ContributionService(IexecHubService iexecHubService,
+                               ChainHeadTracker chainHeadTracker) {
         this.iexecHubService = iexecHubService;
+        this.chainHeadTracker = chainHeadTracker;
     }
 
     public static String computeResultSeal(String walletAddress, String chainTaskId, String deterministHash) {
@@ -38,7 +40,18 @@ public class ContributionService {
         return iexecHubService.getChainTask(chainTaskId).isPresent();
     }
 
+    // local time (ms) of the contribution deadline of the task
+    public Optional<Long> getContributionDeadline(String chainTaskId) {
+        return iexecHubService.getChainTask(chainTaskId)
+                .map(chainTask -> chainHeadTracker.toLocalTime(chainTask.getContributionDeadline()));
+    }
+
+    // latency critical: the reads are hedged over the RPC endpoints
     public Optional<ReplicateStatus> getCanContributeStatus(String chainTaskId) {
+        return RpcEndpointPool.hedged(() -> computeCanContributeStatus(chainTaskId));
+    }
+
+    private Optional<ReplicateStatus> computeCanContributeStatus(String chainTaskId) {
         Optional<ChainTask> optionalChainTask = iexecHubService.getChainTask(chainTaskId);
         if (!optionalChainTask.isPresent()) {
             return Optional.empty();
@@ -79,7 +92,7 @@ public class ContributionService {
     }
 
     private boolean isBeforeContributionDeadlineToContribute(ChainTask chainTask) {
-        return new Date().getTime() < chainTask.getContributionDeadline();
+        return chainHeadTracker.getChainTime() < chainTask.getContributionDeadline();
     }
 
     private boolean isContributionUnsetToContribute(ChainTask chainTask) {
@@ -143,7 +156,7 @@ public class ContributionService {
         }
 
         return ChainUtils.buildChainReceipt(contributeResponse.log, contribAuth.getChainTaskId(),
-                iexecHubService.getLastBlock());
+                chainHeadTracker.getHeadBlockNumber());
     }
 
     public boolean isContributionAuthorizationValid(ContributionAuthorization auth, String signerAddress) {
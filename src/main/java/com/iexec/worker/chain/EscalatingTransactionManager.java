@@ -0,0 +1,268 @@
+package com.iexec.worker.chain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.tx.RawTransactionManager;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/*
+ * Signs the transactions of the contract wrappers with the price of the GasPriceStrategy instead of their
+ * static one, and stays with them until one is mined: a transaction still pending after the replacement
+ * period is sent again with the same nonce and a higher price, up to the price cap of the strategy.
+ * The wrapper then gets the hash of the mined transaction, whichever of the replacements it is: past the
+ * deadline, the transaction is not replaced anymore but all of its hashes are still polled.
+ * The deadline of the transaction being sent is given by withDeadline (no deadline otherwise).
+ * Each transaction is first simulated on the pending block: one that would revert is not sent (no gas paid,
+ * no block waited for) and a TransactionRevertedException is thrown instead; the gas limit of the others is
+ * sized from the estimate. Only a revert reason or a revert error of the node counts as a revert: a simulation
+ * failing otherwise (endpoints unreachable, rate limit, missing state) is retried, then fails with an
+ * IOException and the transaction is not sent.
+ * */
+@Slf4j
+class EscalatingTransactionManager extends RawTransactionManager {
+
+    private static final long RECEIPT_POLLING_PERIOD = 2000;
+    // a transaction without deadline is left to the contract wrapper after this time
+    private static final long MAX_ESCALATION_TIME = 600000;
+    // as long as the contract wrappers wait for a receipt
+    private static final long MAX_RECEIPT_WAIT = 600000;
+    // margin over the estimated gas, the state may change a little until the transaction is mined
+    private static final int GAS_LIMIT_MARGIN_PERCENT = 20;
+    // selector of Error(string), prefix of the revert reasons
+    private static final String REVERT_REASON_SELECTOR = "0x08c379a0";
+    // code of the "execution reverted" errors
+    private static final int REVERT_ERROR_CODE = 3;
+    // messages of the nodes for a call or an estimation which would revert
+    private static final String[] REVERT_ERROR_MESSAGES = {"revert", "always failing", "gas required exceeds",
+            "invalid opcode", "out of gas"};
+    private static final int SIMULATION_ATTEMPTS = 3;
+    private static final long SIMULATION_RETRY_DELAY = 1000;
+
+    private final Web3j web3j;
+    private final GasPriceStrategy gasPriceStrategy;
+    private final long replacementPeriod;
+    private final ThreadLocal<Long> deadline;
+
+    EscalatingTransactionManager(Web3j web3j, Credentials credentials, GasPriceStrategy gasPriceStrategy,
+                                 long replacementPeriod) {
+        super(web3j, credentials);
+        this.web3j = web3j;
+        this.gasPriceStrategy = gasPriceStrategy;
+        this.replacementPeriod = replacementPeriod;
+        this.deadline = ThreadLocal.withInitial(() -> Long.MAX_VALUE);
+    }
+
+    // deadline is the local time (ms) after which the transactions sent by the call are useless
+    <T> T withDeadline(long deadline, Supplier<T> call) {
+        this.deadline.set(deadline);
+        try {
+            // simulation, nonce and receipts of a transaction go before the reads
+            return RpcEndpointPool.prioritized(RpcRateLimiter.Priority.TRANSACTION, call);
+        } finally {
+            this.deadline.remove();
+        }
+    }
+
+    // the gas price of the wrapper is ignored, its gas limit is the upper bound of the estimated one
+    @Override
+    public EthSendTransaction sendTransaction(BigInteger gasPrice, BigInteger gasLimit, String to, String data,
+                                              BigInteger value) throws IOException {
+        gasLimit = simulate(to, data).min(gasLimit);
+        long transactionDeadline = deadline.get();
+        long stopTime = Math.min(transactionDeadline, System.currentTimeMillis() + MAX_ESCALATION_TIME);
+        BigInteger nonce = getNonce();
+        BigInteger currentGasPrice = gasPriceStrategy.getGasPrice(transactionDeadline, gasLimit);
+
+        EthSendTransaction sent = signAndSend(RawTransaction.createTransaction(nonce, currentGasPrice, gasLimit,
+                to, value, data));
+        if (sent.hasError()) {
+            return sent;
+        }
+        List<String> hashes = new ArrayList<>();
+        hashes.add(sent.getTransactionHash());
+        long replacementTime = System.currentTimeMillis() + replacementPeriod;
+
+        while (System.currentTimeMillis() < stopTime) {
+            Optional<String> minedHash = findMinedHash(hashes);
+            if (minedHash.isPresent()) {
+                return withHash(minedHash.get());
+            }
+            if (System.currentTimeMillis() >= replacementTime) {
+                replacementTime = System.currentTimeMillis() + replacementPeriod;
+                BigInteger replacementGasPrice = gasPriceStrategy.getReplacementGasPrice(currentGasPrice,
+                        transactionDeadline, gasLimit);
+                if (replacementGasPrice.compareTo(currentGasPrice) > 0) {
+                    EthSendTransaction replacement = signAndSend(RawTransaction.createTransaction(nonce,
+                            replacementGasPrice, gasLimit, to, value, data));
+                    if (replacement.hasError()) {
+                        // e.g. one of the previous ones has just been mined (nonce too low)
+                        log.warn("Failed to replace transaction [nonce:{}, gasPrice:{}, error:{}]",
+                                nonce, replacementGasPrice, replacement.getError().getMessage());
+                    } else {
+                        log.info("Stuck transaction replaced [nonce:{}, gasPrice:{}, previousGasPrice:{}, hash:{}]",
+                                nonce, replacementGasPrice, currentGasPrice, replacement.getTransactionHash());
+                        currentGasPrice = replacementGasPrice;
+                        hashes.add(replacement.getTransactionHash());
+                    }
+                }
+            }
+            try {
+                Thread.sleep(RECEIPT_POLLING_PERIOD);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for transaction " + hashes);
+            }
+        }
+        return withHash(waitForMinedHash(hashes, nonce));
+    }
+
+    /*
+     * Any of the hashes may still be mined, e.g. the first one right after a replacement: they are all
+     * polled until one of them is mined, or until the nonce is used by none of them (another transaction
+     * of the wallet). The wrapper then waits for the receipt of the returned hash, the last one if none
+     * has been mined.
+     * */
+    private String waitForMinedHash(List<String> hashes, BigInteger nonce) throws IOException {
+        String lastHash = hashes.get(hashes.size() - 1);
+        long giveUpTime = System.currentTimeMillis() + MAX_RECEIPT_WAIT;
+        while (System.currentTimeMillis() < giveUpTime) {
+            // nonce first: once it is used, the receipt of the mined hash can be read
+            boolean isNonceUsed = isNonceUsed(nonce);
+            Optional<String> minedHash = findMinedHash(hashes);
+            if (minedHash.isPresent()) {
+                return minedHash.get();
+            }
+            if (isNonceUsed) {
+                log.warn("Nonce used by another transaction [nonce:{}, hashes:{}]", nonce, hashes);
+                return lastHash;
+            }
+            try {
+                Thread.sleep(RECEIPT_POLLING_PERIOD);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for transaction " + hashes);
+            }
+        }
+        return lastHash;
+    }
+
+    private boolean isNonceUsed(BigInteger nonce) throws IOException {
+        return web3j.ethGetTransactionCount(getFromAddress(), DefaultBlockParameterName.LATEST).send()
+                .getTransactionCount().compareTo(nonce) > 0;
+    }
+
+    // returns the gas limit of the transaction, throws a TransactionRevertedException if it would revert
+    private BigInteger simulate(String to, String data) throws IOException {
+        Transaction transaction = Transaction.createEthCallTransaction(getFromAddress(), to, data);
+        IOException lastException = null;
+        for (int attempt = 1; attempt <= SIMULATION_ATTEMPTS; attempt++) {
+            try {
+                return simulateOnce(transaction);
+            } catch (TransactionRevertedException e) {
+                throw e;
+            } catch (IOException e) {
+                log.warn("Failed to simulate transaction [attempt:{}, exception:{}]", attempt, e.getMessage());
+                lastException = e;
+            }
+            if (attempt < SIMULATION_ATTEMPTS) {
+                try {
+                    Thread.sleep(SIMULATION_RETRY_DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while simulating transaction");
+                }
+            }
+        }
+        throw lastException;
+    }
+
+    private BigInteger simulateOnce(Transaction transaction) throws IOException {
+        EthCall ethCall = web3j.ethCall(transaction, DefaultBlockParameterName.PENDING).send();
+        checkError(ethCall);
+        String revertReason = decodeRevertReason(ethCall.getValue());
+        if (!revertReason.isEmpty()) {
+            throw new TransactionRevertedException(revertReason);
+        }
+        // some nodes don't report reverts on eth_call, the estimation fails for them
+        EthEstimateGas ethEstimateGas = web3j.ethEstimateGas(transaction).send();
+        checkError(ethEstimateGas);
+        return ethEstimateGas.getAmountUsed()
+                .multiply(BigInteger.valueOf(100 + GAS_LIMIT_MARGIN_PERCENT))
+                .divide(BigInteger.valueOf(100));
+    }
+
+    // any other error is one of the node, which says nothing about the transaction
+    private static void checkError(Response<?> response) throws IOException {
+        if (!response.hasError()) {
+            return;
+        }
+        Response.Error error = response.getError();
+        if (isRevertError(error)) {
+            throw new TransactionRevertedException(error.getMessage());
+        }
+        throw new IOException("RPC error [code:" + error.getCode() + ", message:" + error.getMessage() + "]");
+    }
+
+    static boolean isRevertError(Response.Error error) {
+        if (error.getCode() == REVERT_ERROR_CODE) {
+            return true;
+        }
+        String message = error.getMessage() != null ? error.getMessage().toLowerCase() : "";
+        for (String revertMessage : REVERT_ERROR_MESSAGES) {
+            if (message.contains(revertMessage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Error(string) encoding: selector, offset, length, content
+    static String decodeRevertReason(String value) {
+        if (value == null || !value.startsWith(REVERT_REASON_SELECTOR)) {
+            return "";
+        }
+        String encoded = value.substring(REVERT_REASON_SELECTOR.length());
+        if (encoded.length() < 128) {
+            return "reverted";
+        }
+        int length = new BigInteger(encoded.substring(64, 128), 16).intValue();
+        if (encoded.length() < 128 + 2 * length) {
+            return "reverted";
+        }
+        String reason = new String(Numeric.hexStringToByteArray(encoded.substring(128, 128 + 2 * length)),
+                StandardCharsets.UTF_8);
+        return reason.isEmpty() ? "reverted" : reason;
+    }
+
+    private Optional<String> findMinedHash(List<String> hashes) throws IOException {
+        for (String hash : hashes) {
+            if (web3j.ethGetTransactionReceipt(hash).send().getTransactionReceipt().isPresent()) {
+                return Optional.of(hash);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static EthSendTransaction withHash(String hash) {
+        EthSendTransaction ethSendTransaction = new EthSendTransaction();
+        ethSendTransaction.setResult(hash);
+        return ethSendTransaction;
+    }
+}
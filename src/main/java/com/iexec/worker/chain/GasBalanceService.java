@@ -0,0 +1,150 @@
+package com.iexec.worker.chain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Keeps the gas balance of the worker wallet without a balance request per transaction: the balance is fetched
+ * at most once per new head block and decreased with the gasUsed of our own receipts in between.
+ * The cost of a contribute and of a reveal is learnt from our receipts, and each contributed task keeps a
+ * reveal cost reserved until it is revealed or dropped, so new work is declined before in-flight reveals
+ * become unaffordable.
+ * Costs are priced with the gas price the GasPriceStrategy would pay for an urgent transaction, not with the
+ * node price, which our transactions may exceed.
+ * */
+@Slf4j
+@Service
+public class GasBalanceService {
+
+    // initial estimations, replaced by a moving average of our receipts
+    private static final long INITIAL_CONTRIBUTE_GAS = 500000;
+    private static final long INITIAL_REVEAL_GAS = 200000;
+    // below this number of contribute + reveal rounds, a top-up alert is logged
+    private static final long LOW_GAS_ALERT_ROUNDS = 10;
+
+    public enum TransactionType {
+        CONTRIBUTE, REVEAL
+    }
+
+    private Web3jService web3jService;
+    private CredentialsService credentialsService;
+    private ChainHeadTracker chainHeadTracker;
+    private GasPriceStrategy gasPriceStrategy;
+
+    private BigInteger balance;
+    private BigInteger gasPrice;
+    private long balanceBlockNumber;
+    private long contributeGas;
+    private long revealGas;
+    private Set<String> reservedReveals;
+
+    public GasBalanceService(Web3jService web3jService,
+                             CredentialsService credentialsService,
+                             ChainHeadTracker chainHeadTracker,
+                             GasPriceStrategy gasPriceStrategy) {
+        this.web3jService = web3jService;
+        this.credentialsService = credentialsService;
+        this.chainHeadTracker = chainHeadTracker;
+        this.gasPriceStrategy = gasPriceStrategy;
+        this.balance = BigInteger.ZERO;
+        this.gasPrice = BigInteger.ZERO;
+        this.balanceBlockNumber = -1;
+        this.contributeGas = INITIAL_CONTRIBUTE_GAS;
+        this.revealGas = INITIAL_REVEAL_GAS;
+        this.reservedReveals = ConcurrentHashMap.newKeySet();
+    }
+
+    // a new task needs a contribute and a reveal, on top of the reveals of the tasks already contributed
+    public boolean hasEnoughGasToContribute() {
+        return getAffordableContributeCount() > 0;
+    }
+
+    // the reveal of a contributed task is already reserved, it only needs to be affordable by itself
+    public boolean hasEnoughGasToReveal() {
+        refreshIfNewBlock();
+        return getBalance().compareTo(cost(revealGas)) >= 0;
+    }
+
+    public long getAffordableContributeCount() {
+        refreshIfNewBlock();
+        return computeAffordableContributeCount();
+    }
+
+    private long computeAffordableContributeCount() {
+        BigInteger available = getBalance().subtract(cost(revealGas * reservedReveals.size()));
+        BigInteger roundCost = cost(contributeGas + revealGas);
+        if (roundCost.signum() == 0) {
+            // free gas (e.g. sidechain with a zero gas price)
+            return Long.MAX_VALUE;
+        }
+        if (available.signum() <= 0) {
+            return 0;
+        }
+        return available.divide(roundCost).longValue();
+    }
+
+    public synchronized void onTransactionMined(String chainTaskId, TransactionType type, BigInteger gasUsed) {
+        if (gasUsed != null) {
+            balance = balance.subtract(gasUsed.multiply(gasPrice)).max(BigInteger.ZERO);
+            // exponential moving average of the gas used by each kind of transaction
+            if (type.equals(TransactionType.CONTRIBUTE)) {
+                contributeGas = (3 * contributeGas + gasUsed.longValue()) / 4;
+            } else {
+                revealGas = (3 * revealGas + gasUsed.longValue()) / 4;
+            }
+        }
+
+        if (type.equals(TransactionType.CONTRIBUTE)) {
+            reservedReveals.add(chainTaskId);
+        } else {
+            reservedReveals.remove(chainTaskId);
+        }
+    }
+
+    // the task won't be revealed by this worker (aborted, completed)
+    public void releaseReservation(String chainTaskId) {
+        reservedReveals.remove(chainTaskId);
+    }
+
+    private synchronized BigInteger getBalance() {
+        return balance;
+    }
+
+    private BigInteger cost(long gas) {
+        return BigInteger.valueOf(gas).multiply(gasPrice);
+    }
+
+    private void refreshIfNewBlock() {
+        long headBlockNumber = chainHeadTracker.getHeadBlockNumber();
+        synchronized (this) {
+            if (headBlockNumber <= balanceBlockNumber) {
+                return;
+            }
+            try {
+                String address = credentialsService.getCredentials().getAddress();
+                balance = web3jService.getWeb3j().ethGetBalance(address, DefaultBlockParameterName.LATEST)
+                        .send().getBalance();
+                gasPrice = gasPriceStrategy.getReservationGasPrice();
+                balanceBlockNumber = headBlockNumber;
+            } catch (Exception e) {
+                log.error("Failed to refresh gas balance [exception:{}]", e.getMessage());
+                return;
+            }
+        }
+        alertIfLow();
+    }
+
+    private void alertIfLow() {
+        long affordableRounds = computeAffordableContributeCount();
+        if (affordableRounds < LOW_GAS_ALERT_ROUNDS) {
+            log.warn("Gas is running low, the wallet should be topped up [balance:{}, gasPrice:{}, " +
+                            "affordableContributes:{}, reservedReveals:{}]",
+                    getBalance(), gasPrice, affordableRounds, reservedReveals.size());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Gas price of our transactions, picked from the prices recently included on chain rather than a static one.
+ * Each new head is sampled in the background for the lowest gas price its block included (the price to get in
+ * that block); over the last blocks, a transaction with time left gets the median of those, an urgent one the
+ * highest of them plus a margin. The node price (eth_gasPrice) is used while there is no sample, the configured
+ * default price while the node price could not be read either: a transaction is never priced at 0, which its
+ * replacements could not raise. A head is sampled again until it succeeds.
+ * Prices never exceed the configured max gas price, nor the max transaction fee divided by the gas limit of
+ * the transaction. A transaction and its replacements share a nonce, only one of them is mined: the fee paid
+ * for the transaction is then capped by the max transaction fee, replacements included.
+ * */
+@Slf4j
+@Service
+public class GasPriceStrategy {
+
+    // blocks of gas price history
+    private static final int SAMPLED_BLOCKS = 20;
+    // below this time left, a transaction is priced to get in any of the sampled blocks
+    private static final long URGENT_TIME_LEFT = 600000;
+    // below this time left, that price is raised again
+    private static final long CRITICAL_TIME_LEFT = 120000;
+    // nodes reject a replacement below +10%, kept above for rounding
+    private static final int REPLACEMENT_INCREASE_PERCENT = 12;
+    private static final int CRITICAL_INCREASE_PERCENT = 25;
+
+    private Web3jService web3jService;
+    private ChainHeadTracker chainHeadTracker;
+    private BigInteger defaultGasPrice;
+    private BigInteger maxGasPrice;
+    private BigInteger maxTransactionFee;
+    // samples the new heads out of the thread that has seen them
+    private ExecutorService samplingExecutor;
+
+    // lowest included price of each sampled block, the most recent last
+    private Deque<BlockSample> samples;
+    // null until read
+    private BigInteger nodeGasPrice;
+    private long sampledBlockNumber;
+
+    public GasPriceStrategy(Web3jService web3jService,
+                            ChainHeadTracker chainHeadTracker,
+                            WorkerConfigurationService workerConfigurationService) {
+        this.web3jService = web3jService;
+        this.chainHeadTracker = chainHeadTracker;
+        this.defaultGasPrice = BigInteger.valueOf(workerConfigurationService.getDefaultGasPrice());
+        this.maxGasPrice = BigInteger.valueOf(workerConfigurationService.getMaxGasPrice());
+        this.maxTransactionFee = BigInteger.valueOf(workerConfigurationService.getMaxTransactionFee());
+        this.samplingExecutor = Executors.newSingleThreadExecutor();
+        this.samples = new ArrayDeque<>();
+        this.nodeGasPrice = null;
+        this.sampledBlockNumber = -1;
+        chainHeadTracker.addHeadListener(this::onNewHead);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        samplingExecutor.shutdownNow();
+    }
+
+    void onNewHead(long headBlockNumber) {
+        try {
+            samplingExecutor.execute(() -> sampleIfNewBlock(headBlockNumber));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    // deadline is the local time (ms) after which the transaction is useless
+    public BigInteger getGasPrice(long deadline, BigInteger gasLimit) {
+        // a head not sampled yet (e.g. before the first one has been pushed) is sampled right away
+        sampleIfNewBlock(chainHeadTracker.getHeadBlockNumber());
+        return computeGasPrice(deadline - System.currentTimeMillis()).min(getPriceCap(gasLimit));
+    }
+
+    // price to reserve gas for a transaction whatever its deadline: the one of an urgent transaction
+    public BigInteger getReservationGasPrice() {
+        sampleIfNewBlock(chainHeadTracker.getHeadBlockNumber());
+        return computeGasPrice(CRITICAL_TIME_LEFT);
+    }
+
+    /*
+     * Price of a replacement of a stuck transaction (same nonce): at least the node minimum increase over the
+     * previous price, more if the prices went up meanwhile.
+     * Capped like the first price: once the previous price is at the cap it is returned as is, and the
+     * transaction is not replaced anymore.
+     * */
+    public BigInteger getReplacementGasPrice(BigInteger previousGasPrice, long deadline, BigInteger gasLimit) {
+        BigInteger priceCap = getPriceCap(gasLimit);
+        BigInteger increased = increase(previousGasPrice, REPLACEMENT_INCREASE_PERCENT);
+        BigInteger replacement = increased.max(getGasPrice(deadline, gasLimit));
+        if (replacement.compareTo(priceCap) > 0) {
+            return previousGasPrice.max(priceCap);
+        }
+        return replacement;
+    }
+
+    // highest price keeping gasLimit x price under the max transaction fee
+    BigInteger getPriceCap(BigInteger gasLimit) {
+        if (gasLimit.signum() <= 0) {
+            return maxGasPrice;
+        }
+        return maxGasPrice.min(maxTransactionFee.divide(gasLimit));
+    }
+
+    synchronized BigInteger computeGasPrice(long timeLeft) {
+        List<BigInteger> prices = new ArrayList<>();
+        for (BlockSample sample : samples) {
+            prices.add(sample.gasPrice);
+        }
+        BigInteger gasPrice;
+        if (prices.isEmpty()) {
+            gasPrice = nodeGasPrice != null ? nodeGasPrice : defaultGasPrice;
+        } else if (timeLeft >= URGENT_TIME_LEFT) {
+            Collections.sort(prices);
+            gasPrice = prices.get(prices.size() / 2);
+        } else {
+            gasPrice = Collections.max(prices);
+            if (timeLeft < CRITICAL_TIME_LEFT) {
+                gasPrice = increase(gasPrice, CRITICAL_INCREASE_PERCENT);
+            }
+        }
+        return gasPrice.min(maxGasPrice);
+    }
+
+    synchronized void addSample(long blockNumber, BigInteger lowestGasPrice) {
+        if (!samples.isEmpty() && samples.peekLast().blockNumber >= blockNumber) {
+            // already sampled by a concurrent call
+            return;
+        }
+        samples.addLast(new BlockSample(blockNumber, lowestGasPrice));
+        while (!samples.isEmpty() && samples.peekFirst().blockNumber <= blockNumber - SAMPLED_BLOCKS) {
+            samples.removeFirst();
+        }
+    }
+
+    synchronized void setNodeGasPrice(BigInteger nodeGasPrice) {
+        this.nodeGasPrice = nodeGasPrice;
+    }
+
+    // the head is only marked as sampled once its sample is added: a failed one is sampled again
+    private void sampleIfNewBlock(long headBlockNumber) {
+        synchronized (this) {
+            if (headBlockNumber <= sampledBlockNumber) {
+                return;
+            }
+        }
+        try {
+            BigInteger gasPrice = web3jService.getWeb3j().ethGasPrice().send().getGasPrice();
+            setNodeGasPrice(gasPrice);
+            EthBlock.Block block = web3jService.getWeb3j()
+                    .ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(headBlockNumber)), true)
+                    .send().getBlock();
+            if (block == null) {
+                log.warn("Failed to sample gas prices, block not found [blockNumber:{}]", headBlockNumber);
+                return;
+            }
+            BigInteger lowestGasPrice = null;
+            for (EthBlock.TransactionResult result : block.getTransactions()) {
+                BigInteger transactionGasPrice = ((EthBlock.TransactionObject) result.get()).getGasPrice();
+                if (lowestGasPrice == null || transactionGasPrice.compareTo(lowestGasPrice) < 0) {
+                    lowestGasPrice = transactionGasPrice;
+                }
+            }
+            // an empty block would have taken any price, the node price is used as the floor
+            addSample(block.getNumber().longValue(), lowestGasPrice != null ? lowestGasPrice : gasPrice);
+            synchronized (this) {
+                sampledBlockNumber = Math.max(sampledBlockNumber, headBlockNumber);
+            }
+        } catch (Exception e) {
+            log.error("Failed to sample gas prices [blockNumber:{}, exception:{}]", headBlockNumber, e.getMessage());
+        }
+    }
+
+    private static BigInteger increase(BigInteger gasPrice, int percent) {
+        return gasPrice.multiply(BigInteger.valueOf(100 + percent)).divide(BigInteger.valueOf(100));
+    }
+
+    private static class BlockSample {
+        private final long blockNumber;
+        private final BigInteger gasPrice;
+
+        BlockSample(long blockNumber, BigInteger gasPrice) {
+            this.blockNumber = blockNumber;
+            this.gasPrice = gasPrice;
+        }
+    }
+}
@@ -6,23 +6,26 @@ import com.iexec.common.contract.generated.App;
 import com.iexec.common.contract.generated.IexecClerkABILegacy;
 import com.iexec.common.contract.generated.IexecHubABILegacy;
 import com.iexec.worker.config.PublicConfigurationService;
+import com.iexec.worker.config.WorkerConfigurationService;
 import com.iexec.worker.feign.CustomFeignClient;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.web3j.crypto.Sign;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.RemoteCall;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
-import java.io.IOException;
+import javax.annotation.PreDestroy;
 import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static com.iexec.common.utils.BytesUtils.stringToBytes;
 
@@ -31,31 +34,109 @@ import static com.iexec.common.utils.BytesUtils.stringToBytes;
 @Service
 public class IexecHubService {
 
+    // upper bound of the gas limit of the contribute and reveal transactions (web3j contract default), the
+    // limit is sized from their estimation
+    private static final BigInteger TRANSACTION_GAS_LIMIT = BigInteger.valueOf(4300000);
+    // entries of each cache of immutable chain objects
+    private static final int CHAIN_CACHE_SIZE = 1000;
+
     private final IexecHubABILegacy iexecHub;
+    // same contract, its transactions are priced by the GasPriceStrategy
+    private final IexecHubABILegacy iexecHubTransactions;
+    private final EscalatingTransactionManager transactionManager;
     private final CredentialsService credentialsService;
     private final IexecClerkABILegacy iexecClerk;
-    private final ThreadPoolExecutor executor;
+    private final TransactionScheduler transactionScheduler;
     private final Web3j web3j;
+    private final GasBalanceService gasBalanceService;
+    private final ChainHeadTracker chainHeadTracker;
+    /*
+     * Chain objects which can't change anymore are decoded once instead of going through the contract wrappers
+     * (and a new App wrapper) on every read: deals, apps and categories, completed tasks and the contributions
+     * to them. A task (or contribution) still in progress is read again each time, through the wrapper: its
+     * status and counters are returned by the same call as its fixed fields, caching these fields would not save
+     * the call. ChainReadBenchmark (src/jmh) compares its decoding to the raw call.
+     * */
+    private final Map<String, ChainDeal> chainDeals;
+    private final Map<String, ChainApp> chainApps;
+    private final Map<Long, ChainCategory> chainCategories;
+    private final Map<String, ChainTask> completedChainTasks;
+    private final Map<String, ChainContribution> completedChainContributions;
 
     @Autowired
     public IexecHubService(CredentialsService credentialsService,
                            CustomFeignClient customFeignClient,
-                           PublicConfigurationService publicConfigurationService) {
+                           PublicConfigurationService publicConfigurationService,
+                           Web3jService web3jService,
+                           GasBalanceService gasBalanceService,
+                           ChainHeadTracker chainHeadTracker,
+                           GasPriceStrategy gasPriceStrategy,
+                           WorkerConfigurationService workerConfigurationService,
+                           MeterRegistry meterRegistry) {
         this.credentialsService = credentialsService;
-        this.web3j = ChainUtils.getWeb3j(publicConfigurationService.getBlockchainURL());
+        this.gasBalanceService = gasBalanceService;
+        this.chainHeadTracker = chainHeadTracker;
+        this.web3j = web3jService.getWeb3j();
         this.iexecHub = ChainUtils.loadHubContract(credentialsService.getCredentials(),
                 this.web3j, publicConfigurationService.getIexecHubAddress());
         this.iexecClerk = ChainUtils.loadClerkContract(credentialsService.getCredentials(),
                 this.web3j, publicConfigurationService.getIexecHubAddress());
-        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        this.transactionManager = new EscalatingTransactionManager(this.web3j, credentialsService.getCredentials(),
+                gasPriceStrategy, workerConfigurationService.getGasReplacementPeriod());
+        // the gas price given here is ignored by the transaction manager
+        this.iexecHubTransactions = IexecHubABILegacy.load(publicConfigurationService.getIexecHubAddress(),
+                this.web3j, transactionManager, BigInteger.ZERO, TRANSACTION_GAS_LIMIT);
+        this.transactionScheduler = new TransactionScheduler(meterRegistry);
+        this.chainDeals = newChainCache();
+        this.chainApps = newChainCache();
+        this.chainCategories = newChainCache();
+        this.completedChainTasks = newChainCache();
+        this.completedChainContributions = newChainCache();
+    }
+
+    // least recently used entries are evicted
+    static <K, V> Map<K, V> newChainCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > CHAIN_CACHE_SIZE;
+            }
+        });
+    }
+
+    static <K, V> Optional<V> getCached(Map<K, V> cache, K key, Supplier<Optional<V>> read) {
+        return getCached(cache, key, read, value -> true);
+    }
+
+    // the value read is only kept if it can't change anymore
+    static <K, V> Optional<V> getCached(Map<K, V> cache, K key, Supplier<Optional<V>> read,
+                                        Predicate<V> isFinal) {
+        V cached = cache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<V> value = read.get();
+        value.filter(isFinal).ifPresent(v -> cache.put(key, v));
+        return value;
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        transactionScheduler.shutdown();
     }
 
     IexecHubABILegacy.TaskContributeEventResponse contribute(ContributionAuthorization contribAuth, String resultHash, String resultSeal, Sign.SignatureData enclaveSignatureData) {
+        String chainTaskId = contribAuth.getChainTaskId();
+        Optional<ChainTask> chainTask = getChainTask(chainTaskId);
+        long deadline = chainTask.map(task -> chainHeadTracker.toLocalTime(task.getContributionDeadline()))
+                .orElse(Long.MAX_VALUE);
         try {
-            return CompletableFuture.supplyAsync(() -> {
-                log.info("Requested  contribute [chainTaskId:{}, waitingTxCount:{}]", contribAuth.getChainTaskId(), getWaitingTransactionCount());
-                return sendContributeTransaction(contribAuth, resultHash, resultSeal, enclaveSignatureData);
-            }, executor).get();
+            return transactionScheduler.submit(chainTaskId, GasBalanceService.TransactionType.CONTRIBUTE,
+                    deadline, getWorkerStake(chainTask), () -> {
+                log.info("Requested  contribute [chainTaskId:{}, waitingTxCount:{}]", chainTaskId, getWaitingTransactionCount());
+                return transactionManager.withDeadline(deadline,
+                        () -> sendContributeTransaction(contribAuth, resultHash, resultSeal, enclaveSignatureData));
+            }).get();
         } catch (InterruptedException | ExecutionException e) {
             e.printStackTrace();
         }
@@ -67,7 +148,7 @@ public class IexecHubService {
 
         try {
 
-            RemoteCall<TransactionReceipt> contributeCall = iexecHub.contributeABILegacy(
+            RemoteCall<TransactionReceipt> contributeCall = iexecHubTransactions.contributeABILegacy(
                     stringToBytes(contribAuth.getChainTaskId()),
                     stringToBytes(resultHash),
                     stringToBytes(resultSeal),
@@ -82,8 +163,12 @@ public class IexecHubService {
             TransactionReceipt contributeReceipt = contributeCall.send();
             if (!iexecHub.getTaskContributeEvents(contributeReceipt).isEmpty()) {
                 log.info("Contributed [chainTaskId:{}, resultHash:{}, gasUsed:{}]", contribAuth.getChainTaskId(), resultHash, contributeReceipt.getGasUsed());
+                gasBalanceService.onTransactionMined(contribAuth.getChainTaskId(),
+                        GasBalanceService.TransactionType.CONTRIBUTE, contributeReceipt.getGasUsed());
                 contributeEvent = iexecHub.getTaskContributeEvents(contributeReceipt).get(0);
             }
+        } catch (TransactionRevertedException e) {
+            log.error("Contribute not sent, it would revert [chainTaskId:{}, reason:{}]", contribAuth.getChainTaskId(), e.getMessage());
         } catch (Exception e) {
             log.error("Failed contribute [chainTaskId:{}, exception:{}]", contribAuth.getChainTaskId(), e.getMessage());
             e.printStackTrace();
@@ -92,11 +177,16 @@ public class IexecHubService {
     }
 
     IexecHubABILegacy.TaskRevealEventResponse reveal(String chainTaskId, String resultDigest) {
+        Optional<ChainTask> chainTask = getChainTask(chainTaskId);
+        long deadline = chainTask.map(task -> chainHeadTracker.toLocalTime(task.getRevealDeadline()))
+                .orElse(Long.MAX_VALUE);
         try {
-            return CompletableFuture.supplyAsync(() -> {
+            return transactionScheduler.submit(chainTaskId, GasBalanceService.TransactionType.REVEAL,
+                    deadline, getWorkerStake(chainTask), () -> {
                 log.info("Requested  reveal [chainTaskId:{}, waitingTxCount:{}]", chainTaskId, getWaitingTransactionCount());
-                return sendRevealTransaction(chainTaskId, resultDigest);
-            }, executor).get();
+                return transactionManager.withDeadline(deadline,
+                        () -> sendRevealTransaction(chainTaskId, resultDigest));
+            }).get();
         } catch (InterruptedException | ExecutionException e) {
             e.printStackTrace();
         }
@@ -106,15 +196,19 @@ public class IexecHubService {
     private IexecHubABILegacy.TaskRevealEventResponse sendRevealTransaction(String chainTaskId, String resultDigest) {
         IexecHubABILegacy.TaskRevealEventResponse revealEvent = null;
         try {
-            RemoteCall<TransactionReceipt> revealCall = iexecHub.reveal(
+            RemoteCall<TransactionReceipt> revealCall = iexecHubTransactions.reveal(
                     stringToBytes(chainTaskId),
                     stringToBytes(resultDigest));
             log.info("Sent reveal [chainTaskId:{}, resultDigest:{}]", chainTaskId, resultDigest);
             TransactionReceipt revealReceipt = revealCall.send();
             if (!iexecHub.getTaskRevealEvents(revealReceipt).isEmpty()) {
                 log.info("Revealed [chainTaskId:{}, resultDigest:{}, gasUsed:{}]", chainTaskId, resultDigest, revealReceipt.getGasUsed());
+                gasBalanceService.onTransactionMined(chainTaskId,
+                        GasBalanceService.TransactionType.REVEAL, revealReceipt.getGasUsed());
                 revealEvent = iexecHub.getTaskRevealEvents(revealReceipt).get(0);
             }
+        } catch (TransactionRevertedException e) {
+            log.error("Reveal not sent, it would revert [chainTaskId:{}, reason:{}]", chainTaskId, e.getMessage());
         } catch (Exception e) {
             log.error("Reveal Failed [chainTaskId:{}, exception:{}]", chainTaskId, e.getMessage());
             e.printStackTrace();
@@ -123,15 +217,24 @@ public class IexecHubService {
     }
 
     private long getWaitingTransactionCount() {
-        return executor.getTaskCount() - 1 - executor.getCompletedTaskCount();
+        return transactionScheduler.getWaitingTransactionCount();
+    }
+
+    // stake lost if the transaction misses its deadline, used to order transactions with close deadlines
+    private BigInteger getWorkerStake(Optional<ChainTask> chainTask) {
+        return chainTask.flatMap(task -> getChainDeal(task.getDealid()))
+                .map(ChainDeal::getWorkerStake)
+                .orElse(BigInteger.ZERO);
     }
 
     public Optional<ChainDeal> getChainDeal(String chainDealId) {
-        return ChainUtils.getChainDeal(credentialsService.getCredentials(), web3j, iexecHub.getContractAddress(), chainDealId);
+        return getCached(chainDeals, chainDealId, () -> ChainUtils.getChainDeal(credentialsService.getCredentials(),
+                web3j, iexecHub.getContractAddress(), chainDealId));
     }
 
     public Optional<ChainTask> getChainTask(String chainTaskId) {
-        return ChainUtils.getChainTask(iexecHub, chainTaskId);
+        return getCached(completedChainTasks, chainTaskId, () -> ChainUtils.getChainTask(iexecHub, chainTaskId),
+                chainTask -> chainTask.getStatus().equals(ChainTaskStatus.COMPLETED));
     }
 
 
@@ -139,31 +242,40 @@ public class IexecHubService {
         return ChainUtils.getChainAccount(iexecClerk, credentialsService.getCredentials().getAddress());
     }
 
-    Optional<ChainContribution> getChainContribution(String chainTaskId) {
-        return ChainUtils.getChainContribution(iexecHub, chainTaskId, credentialsService.getCredentials().getAddress());
+    public Optional<ChainContribution> getChainContribution(String chainTaskId) {
+        // known completed before the read: the contribution read can't change anymore
+        boolean isTaskCompleted = completedChainTasks.containsKey(chainTaskId);
+        return getCached(completedChainContributions, chainTaskId, () -> ChainUtils.getChainContribution(iexecHub,
+                chainTaskId, credentialsService.getCredentials().getAddress()), contribution -> isTaskCompleted);
     }
 
     public Optional<ChainCategory> getChainCategory(long id) {
-        return ChainUtils.getChainCategory(iexecHub, id);
+        return getCached(chainCategories, id, () -> ChainUtils.getChainCategory(iexecHub, id));
     }
 
     public Optional<ChainApp> getChainApp(String address) {
-        App app = ChainUtils.loadDappContract(credentialsService.getCredentials(), web3j, address);
-        return ChainUtils.getChainApp(app);
+        return getCached(chainApps, address, () -> {
+            App app = ChainUtils.loadDappContract(credentialsService.getCredentials(), web3j, address);
+            return ChainUtils.getChainApp(app);
+        });
     }
 
     public boolean hasEnoughGas() {
-        return ChainUtils.hasEnoughGas(web3j, credentialsService.getCredentials().getAddress());
+        return gasBalanceService.hasEnoughGasToContribute();
     }
 
-    public long getLastBlock() {
-        try {
-            return web3j.ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false).send().getBlock().getNumber().longValue();
-        } catch (IOException e) {
-            log.error("GetLastBlock failed");
-        }
-        return 0;
+    public boolean hasEnoughGasToReveal() {
+        return gasBalanceService.hasEnoughGasToReveal();
     }
 
+    Web3j getWeb3j() {
+        return web3j;
+    }
+
+    String getHubAddress() {
+        return iexecHub.getContractAddress();
+    }
+
+
 
 }
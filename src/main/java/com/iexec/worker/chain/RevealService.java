@@ -14,7 +14,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigInteger;
-import java.util.Date;
 import java.util.Optional;
 
 @Slf4j
@@ -24,16 +23,24 @@ public class RevealService {
     private IexecHubService iexecHubService;
     private ResultService resultService;
     private CredentialsService credentialsService;
+    private ChainHeadTracker chainHeadTracker;
 
     public RevealService(IexecHubService iexecHubService,
                          ResultService resultService,
-                         CredentialsService credentialsService) {
+                         CredentialsService credentialsService,
+                         ChainHeadTracker chainHeadTracker) {
         this.iexecHubService = iexecHubService;
         this.resultService = resultService;
         this.credentialsService = credentialsService;
+        this.chainHeadTracker = chainHeadTracker;
     }
 
+    // latency critical: the reads are hedged over the RPC endpoints
     public boolean canReveal(String chainTaskId) {
+        return RpcEndpointPool.hedged(() -> computeCanReveal(chainTaskId));
+    }
+
+    private boolean computeCanReveal(String chainTaskId) {
 
         Optional<ChainTask> optionalChainTask = iexecHubService.getChainTask(chainTaskId);
         if (!optionalChainTask.isPresent()) {
@@ -42,7 +49,7 @@ public class RevealService {
         ChainTask chainTask = optionalChainTask.get();
 
         boolean isChainTaskStatusRevealing = chainTask.getStatus().equals(ChainTaskStatus.REVEALING);
-        boolean isRevealDeadlineReached = chainTask.getRevealDeadline() < new Date().getTime();
+        boolean isRevealDeadlineReached = chainTask.getRevealDeadline() < chainHeadTracker.getChainTime();
 
         Optional<ChainContribution> optionalContribution = iexecHubService.getChainContribution(chainTaskId);
         if (!optionalContribution.isPresent()) {
@@ -101,12 +108,12 @@ public class RevealService {
         }
 
         ChainReceipt chainReceipt = ChainUtils.buildChainReceipt(revealResponse.log,
-                chainTaskId, iexecHubService.getLastBlock());
+                chainTaskId, chainHeadTracker.getHeadBlockNumber());
 
         return Optional.of(chainReceipt);
     }
 
     public boolean hasEnoughGas() {
-        return iexecHubService.hasEnoughGas();
+        return iexecHubService.hasEnoughGasToReveal();
     }
 }
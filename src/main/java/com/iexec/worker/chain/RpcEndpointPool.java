@@ -0,0 +1,341 @@
+package com.iexec.worker.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.web3j.utils.Numeric.cleanHexPrefix;
+
+/*
+ * Transport over several RPC endpoints of the same chain.
+ * Each endpoint is scored from its latency (moving average of real calls and probes) and its block height:
+ * endpoints failing or lagging behind the highest one are only used when no other is available.
+ * Reads go to the best endpoint, or to the next ones if it fails. Inside hedged(...), a read not answered
+ * within the hedge delay is also sent to the second best endpoint and the first answer wins.
+ * Transactions are sent to the best endpoint and to the next ones on failure (same signed transaction).
+ * Identical reads in flight at the same time (same method, params and priority, e.g. the same task read by
+ * several replicates) are merged into a single request whose response is shared; a read is never merged
+ * into one of lower priority, which may still be waiting for the rate limiter. All requests go through the
+ * RpcRateLimiter, by priority: transactions (and their checks, inside prioritized(TRANSACTION, ...)),
+ * then hedged reads, then the rest.
+ * Inside pinned(...), the reads all go to the same endpoint, the best one when the first read is sent, and
+ * are neither merged nor hedged: e.g. a block height and the logs up to it, which a lagging endpoint would return empty.
+ * */
+@Slf4j
+public class RpcEndpointPool extends HttpService {
+
+    private static final ThreadLocal<Boolean> IS_HEDGED = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<RpcRateLimiter.Priority> PRIORITY = ThreadLocal.withInitial(() -> null);
+    private static final ThreadLocal<Pin> PIN = ThreadLocal.withInitial(() -> null);
+    private static final String PROBE_PAYLOAD = "{\"jsonrpc\":\"2.0\",\"method\":\"eth_blockNumber\",\"params\":[],\"id\":0}";
+    private static final String SEND_TRANSACTION_METHOD = "eth_sendRawTransaction";
+
+    private final List<RpcEndpoint> endpoints;
+    private final long maxBlockLag;
+    private final long hedgeDelay;
+    private final ExecutorService hedgeExecutor;
+    private final ObjectMapper mapper;
+    private final RpcRateLimiter rateLimiter;
+    // reads in flight by priority, method and params, the first caller sends the request for all the others
+    private final Map<String, CompletableFuture<byte[]>> inFlightReads;
+    private final AtomicLong coalescedCount;
+
+    public RpcEndpointPool(List<String> urls, long maxBlockLag, long hedgeDelay) {
+        this(urls, maxBlockLag, hedgeDelay, 0);
+    }
+
+    // maxRequestsPerSecond: 0 is unlimited
+    public RpcEndpointPool(List<String> urls, long maxBlockLag, long hedgeDelay, long maxRequestsPerSecond) {
+        super(urls.get(0));
+        this.endpoints = urls.stream().map(RpcEndpoint::new).collect(Collectors.toList());
+        this.maxBlockLag = maxBlockLag;
+        this.hedgeDelay = hedgeDelay;
+        this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "rpc-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.mapper = new ObjectMapper();
+        this.rateLimiter = new RpcRateLimiter(maxRequestsPerSecond);
+        this.inFlightReads = new ConcurrentHashMap<>();
+        this.coalescedCount = new AtomicLong();
+    }
+
+    // chain reads done by the supplier are hedged when there is more than one endpoint
+    public static <T> T hedged(Supplier<T> supplier) {
+        boolean wasHedged = IS_HEDGED.get();
+        IS_HEDGED.set(true);
+        try {
+            return supplier.get();
+        } finally {
+            IS_HEDGED.set(wasHedged);
+        }
+    }
+
+    // reads done by the supplier go to the same endpoint, nested calls share the endpoint of the outer one
+    public static <T> T pinned(Supplier<T> supplier) {
+        if (PIN.get() != null) {
+            return supplier.get();
+        }
+        PIN.set(new Pin());
+        try {
+            return supplier.get();
+        } finally {
+            PIN.remove();
+        }
+    }
+
+    // requests sent by the supplier have the given priority (unless they are hedged or transactions)
+    static <T> T prioritized(RpcRateLimiter.Priority priority, Supplier<T> supplier) {
+        RpcRateLimiter.Priority previousPriority = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return supplier.get();
+        } finally {
+            PRIORITY.set(previousPriority);
+        }
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        JsonNode request = mapper.readTree(payload);
+        if (SEND_TRANSACTION_METHOD.equals(request.path("method").asText())) {
+            rateLimiter.acquire(RpcRateLimiter.Priority.TRANSACTION);
+            return new ByteArrayInputStream(sendWithFailover(payload, getRankedEndpoints()));
+        }
+        Pin pin = PIN.get();
+        if (pin != null) {
+            rateLimiter.acquire(getPriority());
+            return new ByteArrayInputStream(sendPinned(payload, pin));
+        }
+        if (!request.isObject()) {
+            // batch
+            rateLimiter.acquire(getPriority());
+            return new ByteArrayInputStream(sendRead(payload));
+        }
+
+        // web3j doesn't check the id of the responses, a shared response can be returned as is
+        ((ObjectNode) request).remove("id");
+        RpcRateLimiter.Priority priority = getPriority();
+        String key = priority + ":" + request.toString();
+        CompletableFuture<byte[]> read = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlightRead = inFlightReads.putIfAbsent(key, read);
+        if (inFlightRead != null) {
+            coalescedCount.incrementAndGet();
+            return new ByteArrayInputStream(await(inFlightRead));
+        }
+        try {
+            rateLimiter.acquire(priority);
+            byte[] response = sendRead(payload);
+            read.complete(response);
+            return new ByteArrayInputStream(response);
+        } catch (IOException | RuntimeException e) {
+            read.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightReads.remove(key, read);
+        }
+    }
+
+    private byte[] sendRead(String payload) throws IOException {
+        List<RpcEndpoint> ranked = getRankedEndpoints();
+        if (IS_HEDGED.get() && ranked.size() > 1) {
+            return sendHedged(payload, ranked.get(0), ranked.get(1));
+        }
+        return sendWithFailover(payload, ranked);
+    }
+
+    // no failover: a failed endpoint is ranked down, the pinned reads are done again later on another one
+    private byte[] sendPinned(String payload, Pin pin) throws IOException {
+        if (pin.endpoint == null) {
+            pin.endpoint = getRankedEndpoints().get(0);
+        }
+        return pin.endpoint.send(payload);
+    }
+
+    private static RpcRateLimiter.Priority getPriority() {
+        if (PRIORITY.get() != null) {
+            return PRIORITY.get();
+        }
+        return IS_HEDGED.get() ? RpcRateLimiter.Priority.ELIGIBILITY : RpcRateLimiter.Priority.BACKGROUND;
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> read) throws IOException {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a coalesced read");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /*
+     * Probes all the endpoints (block height and latency), should be called periodically.
+     * */
+    public void probe() {
+        for (RpcEndpoint endpoint : endpoints) {
+            try {
+                JsonNode response = mapper.readTree(endpoint.send(PROBE_PAYLOAD));
+                String result = response.path("result").asText();
+                endpoint.blockNumber = new BigInteger(cleanHexPrefix(result), 16).longValue();
+            } catch (Exception e) {
+                log.warn("RPC endpoint probe failed [url:{}, exception:{}]", endpoint.url, e.getMessage());
+            }
+        }
+    }
+
+    public List<String> getRankedUrls() {
+        return getRankedEndpoints().stream().map(endpoint -> endpoint.url).collect(Collectors.toList());
+    }
+
+    // reads answered with the response of an identical read in flight
+    public long getCoalescedRequestCount() {
+        return coalescedCount.get();
+    }
+
+    // requests which had to wait for the rate limit
+    public long getThrottledRequestCount() {
+        return rateLimiter.getThrottledCount();
+    }
+
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    List<RpcEndpoint> getRankedEndpoints() {
+        long highestBlock = endpoints.stream().mapToLong(endpoint -> endpoint.blockNumber).max().orElse(0);
+        List<RpcEndpoint> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator
+                .comparing((RpcEndpoint endpoint) -> !endpoint.isHealthy(highestBlock, maxBlockLag))
+                .thenComparingDouble(endpoint -> endpoint.latency));
+        return ranked;
+    }
+
+    private byte[] sendWithFailover(String payload, List<RpcEndpoint> ranked) throws IOException {
+        IOException lastException = null;
+        for (RpcEndpoint endpoint : ranked) {
+            try {
+                return endpoint.send(payload);
+            } catch (IOException e) {
+                log.warn("RPC call failed, trying next endpoint [url:{}, exception:{}]", endpoint.url, e.getMessage());
+                lastException = e;
+            }
+        }
+        throw lastException != null ? lastException : new IOException("No RPC endpoint available");
+    }
+
+    private byte[] sendHedged(String payload, RpcEndpoint primary, RpcEndpoint secondary) throws IOException {
+        CompletionService<byte[]> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<byte[]>> futures = new ArrayList<>();
+        futures.add(completionService.submit(() -> primary.send(payload)));
+        boolean isSecondarySent = false;
+        int pending = 1;
+        IOException lastException = null;
+        try {
+            Future<byte[]> done = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            while (true) {
+                if (done == null) {
+                    if (!isSecondarySent) {
+                        // primary is slow (or failed): hedge on the secondary
+                        futures.add(completionService.submit(() -> secondary.send(payload)));
+                        isSecondarySent = true;
+                        pending++;
+                    } else if (pending == 0) {
+                        throw lastException;
+                    }
+                    done = completionService.take();
+                }
+                pending--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    lastException = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                }
+                done = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    static class RpcEndpoint {
+
+        private static final double LATENCY_WEIGHT = 0.2;
+        private static final int MAX_FAILURES = 3;
+
+        private final String url;
+        private final EndpointHttpService httpService;
+        private volatile double latency;
+        private volatile long blockNumber;
+        private volatile int consecutiveFailures;
+
+        RpcEndpoint(String url) {
+            this.url = url;
+            this.httpService = new EndpointHttpService(url);
+        }
+
+        byte[] send(String payload) throws IOException {
+            long start = System.nanoTime();
+            try (InputStream in = httpService.call(payload)) {
+                byte[] response = IOUtils.toByteArray(in);
+                consecutiveFailures = 0;
+                updateLatency((System.nanoTime() - start) / 1000000.0);
+                return response;
+            } catch (IOException e) {
+                consecutiveFailures++;
+                throw e;
+            }
+        }
+
+        boolean isHealthy(long highestBlock, long maxBlockLag) {
+            return consecutiveFailures < MAX_FAILURES && blockNumber + maxBlockLag >= highestBlock;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        private synchronized void updateLatency(double sample) {
+            latency = latency == 0 ? sample : (1 - LATENCY_WEIGHT) * latency + LATENCY_WEIGHT * sample;
+        }
+    }
+
+    private static class Pin {
+        private RpcEndpoint endpoint;
+    }
+
+    // exposes the raw call of a single endpoint
+    static class EndpointHttpService extends HttpService {
+
+        EndpointHttpService(String url) {
+            super(url);
+        }
+
+        InputStream call(String payload) throws IOException {
+            return performIO(payload);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.iexec.worker.chain;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Global token bucket in front of the RPC endpoints (one second of burst), so bursts of reads don't trip
+ * the rate limit of shared nodes.
+ * Priorities are served through reserves: a request may only take a token if it leaves the share of the
+ * bucket reserved to the priorities above it, so transactions are never starved by reads, nor eligibility
+ * checks by background polling. A request without token waits for the refill.
+ * */
+class RpcRateLimiter {
+
+    enum Priority {
+        TRANSACTION(0), ELIGIBILITY(0.1), BACKGROUND(0.5);
+
+        // share of the bucket left to the higher priorities
+        private final double reserve;
+
+        Priority(double reserve) {
+            this.reserve = reserve;
+        }
+    }
+
+    private final long maxRequestsPerSecond;
+    private final double capacity;
+    private final AtomicLong throttledCount;
+    private double tokens;
+    private long lastRefillTime;
+
+    // 0 is unlimited
+    RpcRateLimiter(long maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.capacity = Math.max(1, maxRequestsPerSecond);
+        this.throttledCount = new AtomicLong();
+        this.tokens = capacity;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    void acquire(Priority priority) throws InterruptedIOException {
+        if (maxRequestsPerSecond <= 0) {
+            return;
+        }
+        boolean isThrottled = false;
+        while (true) {
+            long waitTime;
+            synchronized (this) {
+                refill();
+                // a bucket of a single token has no room for reserves
+                double floor = Math.min(capacity * priority.reserve, capacity - 1);
+                if (tokens >= floor + 1) {
+                    tokens--;
+                    return;
+                }
+                waitTime = (long) Math.ceil((floor + 1 - tokens) * 1000 / maxRequestsPerSecond);
+            }
+            if (!isThrottled) {
+                throttledCount.incrementAndGet();
+                isThrottled = true;
+            }
+            try {
+                Thread.sleep(Math.max(1, waitTime));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an RPC token");
+            }
+        }
+    }
+
+    // requests which had to wait for a token
+    long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillTime) * maxRequestsPerSecond / 1e9);
+        lastRefillTime = now;
+    }
+}
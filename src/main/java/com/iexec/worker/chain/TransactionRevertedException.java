@@ -0,0 +1,11 @@
+package com.iexec.worker.chain;
+
+import java.io.IOException;
+
+// the simulation of a transaction reverted, it has not been sent
+class TransactionRevertedException extends IOException {
+
+    TransactionRevertedException(String reason) {
+        super(reason);
+    }
+}
@@ -0,0 +1,116 @@
+package com.iexec.worker.chain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigInteger;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Sends the transactions of the worker one at a time, the most urgent first: by deadline, then by stake
+ * at risk for deadlines in the same minute, then in submission order.
+ * A transaction still queued at its deadline is dropped (it would be reverted), its result is null.
+ * Transactions still queued at shutdown, or submitted after it, fail with a RejectedExecutionException.
+ * */
+@Slf4j
+class TransactionScheduler {
+
+    // deadlines closer than this are considered equally urgent
+    private static final long DEADLINE_RESOLUTION = 60000;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence;
+    private final Map<GasBalanceService.TransactionType, Counter> expiredCounters;
+
+    TransactionScheduler(MeterRegistry meterRegistry) {
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+        this.sequence = new AtomicLong();
+        this.expiredCounters = new EnumMap<>(GasBalanceService.TransactionType.class);
+        for (GasBalanceService.TransactionType type : GasBalanceService.TransactionType.values()) {
+            expiredCounters.put(type, meterRegistry.counter("iexec.chain.tx.expired", "type", type.name()));
+        }
+        meterRegistry.gauge("iexec.chain.tx.queue.size", executor, e -> e.getQueue().size());
+    }
+
+    // deadline is the local time (ms) after which the transaction is useless, value the stake at risk
+    <T> Future<T> submit(String chainTaskId, GasBalanceService.TransactionType type, long deadline,
+                         BigInteger value, Supplier<T> transaction) {
+        PrioritizedTransaction<T> prioritizedTransaction = new PrioritizedTransaction<>(chainTaskId, type,
+                deadline, value, sequence.getAndIncrement(), transaction);
+        try {
+            executor.execute(prioritizedTransaction);
+        } catch (RejectedExecutionException e) {
+            prioritizedTransaction.reject();
+        }
+        return prioritizedTransaction;
+    }
+
+    int getWaitingTransactionCount() {
+        return executor.getQueue().size();
+    }
+
+    void shutdown() {
+        for (Runnable queued : executor.shutdownNow()) {
+            ((PrioritizedTransaction<?>) queued).reject();
+        }
+    }
+
+    private class PrioritizedTransaction<T> extends FutureTask<T> implements Comparable<PrioritizedTransaction<?>> {
+
+        private final String chainTaskId;
+        private final GasBalanceService.TransactionType type;
+        private final long deadline;
+        private final BigInteger value;
+        private final long sequence;
+
+        PrioritizedTransaction(String chainTaskId, GasBalanceService.TransactionType type, long deadline,
+                               BigInteger value, long sequence, Supplier<T> transaction) {
+            super(transaction::get);
+            this.chainTaskId = chainTaskId;
+            this.type = type;
+            this.deadline = deadline;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("Transaction dropped, deadline reached while queued [chainTaskId:{}, type:{}]",
+                        chainTaskId, type);
+                expiredCounters.get(type).increment();
+                set(null);
+                return;
+            }
+            super.run();
+        }
+
+        // the caller waiting for the result is released
+        void reject() {
+            log.warn("Transaction dropped, scheduler shut down [chainTaskId:{}, type:{}]", chainTaskId, type);
+            setException(new RejectedExecutionException("Transaction scheduler shut down"));
+        }
+
+        @Override
+        public int compareTo(PrioritizedTransaction<?> other) {
+            int comparison = Long.compare(deadline / DEADLINE_RESOLUTION, other.deadline / DEADLINE_RESOLUTION);
+            if (comparison == 0) {
+                comparison = other.value.compareTo(value);
+            }
+            if (comparison == 0) {
+                comparison = Long.compare(sequence, other.sequence);
+            }
+            return comparison;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.PublicConfigurationService;
+import com.iexec.worker.config.WorkerConfigurationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Single connection to the blockchain, shared by all the chain services.
+ * The node given by the core is used along with the extra endpoints of the worker configuration,
+ * requests are routed by the RpcEndpointPool.
+ * */
+@Slf4j
+@Service
+public class Web3jService {
+
+    private final Web3j web3j;
+    private final RpcEndpointPool rpcEndpointPool;
+    private final long probePeriod;
+    private final ScheduledExecutorService executor;
+
+    public Web3jService(PublicConfigurationService publicConfigurationService,
+                        WorkerConfigurationService workerConfigurationService,
+                        MeterRegistry meterRegistry) {
+        List<String> urls = new ArrayList<>();
+        urls.add(publicConfigurationService.getBlockchainURL());
+        for (String url : workerConfigurationService.getExtraBlockchainUrls()) {
+            if (!url.isEmpty() && !urls.contains(url)) {
+                urls.add(url);
+            }
+        }
+        log.info("Blockchain RPC endpoints [urls:{}]", urls);
+
+        this.rpcEndpointPool = new RpcEndpointPool(urls, workerConfigurationService.getRpcMaxBlockLag(),
+                workerConfigurationService.getRpcHedgeDelay(), workerConfigurationService.getRpcMaxRequestsPerSecond());
+        meterRegistry.more().counter("iexec.chain.rpc.coalesced", Tags.empty(), rpcEndpointPool,
+                RpcEndpointPool::getCoalescedRequestCount);
+        meterRegistry.more().counter("iexec.chain.rpc.throttled", Tags.empty(), rpcEndpointPool,
+                RpcEndpointPool::getThrottledRequestCount);
+        this.web3j = Web3j.build(rpcEndpointPool);
+        this.probePeriod = workerConfigurationService.getRpcProbePeriod();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PostConstruct
+    void run() {
+        executor.scheduleWithFixedDelay(this::probe, 0, probePeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        executor.shutdownNow();
+        rpcEndpointPool.shutdown();
+    }
+
+    public Web3j getWeb3j() {
+        return web3j;
+    }
+
+    private void probe() {
+        try {
+            rpcEndpointPool.probe();
+            log.debug("RPC endpoints probed [ranking:{}]", rpcEndpointPool.getRankedUrls());
+        } catch (Exception e) {
+            log.error("Failed to probe RPC endpoints [exception:{}]", e.getMessage());
+        }
+    }
+}
@@ -2,17 +2,43 @@ package com.iexec.worker.config;
 
 import com.iexec.common.config.PublicConfiguration;
 import com.iexec.worker.feign.CustomFeignClient;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
+
+@Slf4j
 @Service
 public class PublicConfigurationService {
 
-    private PublicConfiguration publicConfiguration;
+    private CustomFeignClient customFeignClient;
+    private volatile PublicConfiguration publicConfiguration;
 
     public PublicConfigurationService(CustomFeignClient customFeignClient){
+        this.customFeignClient = customFeignClient;
         this.publicConfiguration = customFeignClient.getPublicConfiguration();
     }
 
+    /*
+     * Fetches the configuration again (e.g. after a restart of the core), the previous one is kept if the
+     * core can't be reached. Returns false if the new one can't be used without restarting the worker: the
+     * chain, the contracts and the scheduler address are read once at startup by the other services.
+     * */
+    public boolean refresh() {
+        PublicConfiguration fetched = customFeignClient.getPublicConfiguration();
+        if (fetched == null) {
+            log.warn("Failed to refresh the configuration of the core, keeping the previous one");
+            return true;
+        }
+        PublicConfiguration previous = publicConfiguration;
+        publicConfiguration = fetched;
+        return Objects.equals(previous.getChainId(), fetched.getChainId())
+                && Objects.equals(previous.getBlockchainURL(), fetched.getBlockchainURL())
+                && Objects.equals(previous.getIexecHubAddress(), fetched.getIexecHubAddress())
+                && Objects.equals(previous.getWorkerPoolAddress(), fetched.getWorkerPoolAddress())
+                && Objects.equals(previous.getSchedulerPublicAddress(), fetched.getSchedulerPublicAddress());
+    }
+
     public Integer getChainId() {
         return publicConfiguration.getChainId();
     }
@@ -1,5 +1,6 @@
 package com.iexec.worker.config;
 
+import com.iexec.common.config.WorkerConfigurationModel;
 import com.iexec.worker.chain.CredentialsService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -15,6 +16,69 @@ public class WorkerConfigurationService {
     @Value("${worker.resultBaseDir}")
     private String resultBaseDir;
 
+    @Value("${worker.workerTopicEnabled}")
+    private boolean workerTopicEnabled;
+
+    @Value("${worker.notificationPoolSize}")
+    private int notificationPoolSize;
+
+    @Value("${worker.ioPoolSize}")
+    private int ioPoolSize;
+
+    @Value("${worker.coreIoPoolSize}")
+    private int coreIoPoolSize;
+
+    @Value("${worker.pingPeriod}")
+    private long pingPeriod;
+
+    @Value("${worker.chainEventPollingPeriod}")
+    private long chainEventPollingPeriod;
+
+    @Value("${worker.chainHeadPollingPeriod}")
+    private long chainHeadPollingPeriod;
+
+    @Value("${worker.blockchain.extraUrls}")
+    private String[] extraBlockchainUrls;
+
+    @Value("${worker.blockchain.probePeriod}")
+    private long rpcProbePeriod;
+
+    @Value("${worker.blockchain.maxBlockLag}")
+    private long rpcMaxBlockLag;
+
+    @Value("${worker.blockchain.hedgeDelay}")
+    private long rpcHedgeDelay;
+
+    @Value("${worker.blockchain.maxRequestsPerSecond}")
+    private long rpcMaxRequestsPerSecond;
+
+    @Value("${worker.blockchain.wsUrl}")
+    private String blockchainWsUrl;
+
+    @Value("${worker.stdoutMaxSize}")
+    private long stdoutMaxSize;
+
+    @Value("${worker.stdoutSizePolicy}")
+    private String stdoutSizePolicy;
+
+    @Value("${worker.resultCleanupBatchSize}")
+    private int resultCleanupBatchSize;
+
+    @Value("${worker.resultDiskHighWaterMark}")
+    private int resultDiskHighWaterMark;
+
+    @Value("${worker.defaultGasPrice}")
+    private long defaultGasPrice;
+
+    @Value("${worker.maxGasPrice}")
+    private long maxGasPrice;
+
+    @Value("${worker.maxTransactionFee}")
+    private long maxTransactionFee;
+
+    @Value("${worker.gasReplacementPeriod}")
+    private long gasReplacementPeriod;
+
     public WorkerConfigurationService(CredentialsService credentialsService) {
         this.credentialsService = credentialsService;
     }
@@ -31,6 +95,111 @@ public class WorkerConfigurationService {
         return resultBaseDir + "/" + workerName;
     }
 
+    public boolean isWorkerTopicEnabled() {
+        return workerTopicEnabled;
+    }
+
+    public int getNotificationPoolSize() {
+        return notificationPoolSize;
+    }
+
+    // threads of the I/O stages of the replicates (the computations have one thread per core)
+    public int getIoPoolSize() {
+        return ioPoolSize;
+    }
+
+    // threads sending the asynchronous replicate status updates to the core
+    public int getCoreIoPoolSize() {
+        return coreIoPoolSize;
+    }
+
+    // time (ms) between two pings to the core
+    public long getPingPeriod() {
+        return pingPeriod;
+    }
+
+    public long getChainEventPollingPeriod() {
+        return chainEventPollingPeriod;
+    }
+
+    public long getChainHeadPollingPeriod() {
+        return chainHeadPollingPeriod;
+    }
+
+    public String[] getExtraBlockchainUrls() {
+        return extraBlockchainUrls;
+    }
+
+    public long getRpcProbePeriod() {
+        return rpcProbePeriod;
+    }
+
+    public long getRpcMaxBlockLag() {
+        return rpcMaxBlockLag;
+    }
+
+    public long getRpcHedgeDelay() {
+        return rpcHedgeDelay;
+    }
+
+    // all RPC endpoints together, 0 is unlimited
+    public long getRpcMaxRequestsPerSecond() {
+        return rpcMaxRequestsPerSecond;
+    }
+
+    // empty when heads and events are polled only
+    public String getBlockchainWsUrl() {
+        return blockchainWsUrl;
+    }
+
+    public long getStdoutMaxSize() {
+        return stdoutMaxSize;
+    }
+
+    public String getStdoutSizePolicy() {
+        return stdoutSizePolicy;
+    }
+
+    public int getResultCleanupBatchSize() {
+        return resultCleanupBatchSize;
+    }
+
+    // percentage of the result disk usage above which the cleanup doesn't batch anymore
+    public int getResultDiskHighWaterMark() {
+        return resultDiskHighWaterMark;
+    }
+
+    // wei, used until a gas price has been read from the chain
+    public long getDefaultGasPrice() {
+        return defaultGasPrice;
+    }
+
+    // wei, no transaction is priced above
+    public long getMaxGasPrice() {
+        return maxGasPrice;
+    }
+
+    // wei, no transaction can cost more (gas limit x gas price), whatever its replacements
+    public long getMaxTransactionFee() {
+        return maxTransactionFee;
+    }
+
+    // time (ms) after which a pending transaction is replaced with a higher gas price
+    public long getGasReplacementPeriod() {
+        return gasReplacementPeriod;
+    }
+
+    // description of the worker given to the core when registering
+    public WorkerConfigurationModel getWorkerConfigurationModel() {
+        return WorkerConfigurationModel.builder()
+                .name(getWorkerName())
+                .walletAddress(getWorkerWalletAddress())
+                .os(getOS())
+                .cpu(getCPU())
+                .cpuNb(getNbCPU())
+                .build();
+    }
+
     public String getOS() {
         return System.getProperty("os.name").trim();
     }
@@ -0,0 +1,113 @@
+package com.iexec.worker.docker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * stdout.txt of a computation, written chunk by chunk while the container runs (constant memory).
+ * Its size is capped:
+ * - TRUNCATE keeps the beginning of the logs, the rest is dropped and a marker is appended,
+ * - ROTATE keeps the end of the logs: when the file reaches half of the cap it is moved to stdout.txt.1
+ * (replacing the previous one) and a new file is started.
+ * */
+class ContainerLogFile implements Closeable {
+
+    enum Policy {TRUNCATE, ROTATE}
+
+    static final String TRUNCATED_MARKER = "\n[logs truncated: size limit reached]\n";
+    static final String ROTATED_SUFFIX = ".1";
+
+    private final Path path;
+    private final long maxSize;
+    private final Policy policy;
+    private FileChannel channel;
+    private long size;
+    private boolean isTruncated;
+
+    ContainerLogFile(Path path, long maxSize, Policy policy) throws IOException {
+        this.path = path;
+        this.maxSize = maxSize;
+        this.policy = policy;
+        File parent = path.toFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create folder " + parent);
+        }
+        this.channel = open(path);
+    }
+
+    synchronized void write(ByteBuffer content) throws IOException {
+        if (policy == Policy.ROTATE) {
+            writeRotating(content);
+        } else {
+            writeTruncating(content);
+        }
+    }
+
+    synchronized void write(String content) throws IOException {
+        write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    boolean isTruncated() {
+        return isTruncated;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeTruncating(ByteBuffer content) throws IOException {
+        if (isTruncated) {
+            return;
+        }
+        long available = maxSize - size;
+        if (content.remaining() > available) {
+            content.limit(content.position() + (int) Math.max(0, available));
+            writeFully(content);
+            writeFully(ByteBuffer.wrap(TRUNCATED_MARKER.getBytes(StandardCharsets.UTF_8)));
+            isTruncated = true;
+            return;
+        }
+        writeFully(content);
+    }
+
+    private void writeRotating(ByteBuffer content) throws IOException {
+        long rotationSize = Math.max(1, maxSize / 2);
+        while (content.hasRemaining()) {
+            if (size >= rotationSize) {
+                rotate();
+            }
+            ByteBuffer chunk = content.duplicate();
+            chunk.limit(chunk.position() + (int) Math.min(chunk.remaining(), rotationSize - size));
+            content.position(chunk.limit());
+            writeFully(chunk);
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        Files.move(path, path.resolveSibling(path.getFileName() + ROTATED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        channel = open(path);
+        size = 0;
+        isTruncated = true;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+}
@@ -1,17 +1,22 @@
 package com.iexec.worker.docker;
 
 import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.executor.DeadlineTimer;
 import com.spotify.docker.client.DefaultDockerClient;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.LogStream;
 import com.spotify.docker.client.exceptions.DockerCertificateException;
 import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.ContainerConfig;
 import com.spotify.docker.client.messages.ContainerCreation;
+import com.spotify.docker.client.messages.ContainerExit;
 import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.Volume;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
 import java.util.Map;
@@ -21,16 +26,18 @@ import java.util.concurrent.ConcurrentHashMap;
 @Service
 public class CustomDockerClient {
 
-    public static final String EXITED = "exited";
     protected static final String DOCKER_BASE_VOLUME_NAME = "iexec-worker";
     private static final String REMOTE_PATH = "/iexec";
     private DefaultDockerClient docker;
     private WorkerConfigurationService configurationService;
+    private DeadlineTimer deadlineTimer;
 
     private Map<String, String> taskToContainerId;
 
-    public CustomDockerClient(WorkerConfigurationService configurationService) throws DockerCertificateException {
+    public CustomDockerClient(WorkerConfigurationService configurationService,
+                              DeadlineTimer deadlineTimer) throws DockerCertificateException {
         this.configurationService = configurationService;
+        this.deadlineTimer = deadlineTimer;
         docker = DefaultDockerClient.fromEnv().build();
         taskToContainerId = new ConcurrentHashMap<>();
     }
@@ -150,43 +157,63 @@ public class CustomDockerClient {
         return containerId;
     }
 
+    /*
+     * Blocks until the container exits. It is stopped by the deadline timer if it is still running at the
+     * execution timeout.
+     * */
     boolean waitContainer(String taskId, Date executionTimeout) {
         String containerId = getContainerId(taskId);
-        boolean isExecutionDone = false;
+        DeadlineTimer.Timeout timeout = deadlineTimer.schedule(executionTimeout.getTime(), () -> {
+            log.warn("Computation timed out, stopping container [taskId:{}, containerId:{}]", taskId, containerId);
+            stopContainer(taskId);
+        });
         try {
-            while (true) {
-                boolean isComputed = docker.inspectContainer(containerId).state().status().equals(EXITED);
-                boolean isTimeout = new Date().after(executionTimeout);
-                Thread.sleep(1000);
-                log.info("Computation running [taskId:{}, containerId:{}, status:{}, isComputed:{}, isTimeout:{}]",
-                        taskId, containerId, docker.inspectContainer(containerId).state().status(), isComputed, isTimeout);
-                if (isComputed || isTimeout) {
-                    docker.stopContainer(containerId, 0);
-                    break;
-                }
-            }
-            log.info("Computation completed [taskId:{}, containerId:{}]",
-                    taskId, containerId);
-            isExecutionDone = true;
+            ContainerExit containerExit = docker.waitContainer(containerId);
+            log.info("Computation completed [taskId:{}, containerId:{}, exitCode:{}, isTimeout:{}]",
+                    taskId, containerId, containerExit.statusCode(), timeout.isExpired());
+            return true;
         } catch (DockerException | InterruptedException e) {
             log.error("Computation failed [taskId:{}, containerId:{}]",
                     taskId, containerId);
+        } finally {
+            timeout.cancel();
         }
-        return isExecutionDone;
+        return false;
     }
 
+    boolean stopContainer(String taskId) {
+        String containerId = getContainerId(taskId);
+        if (containerId.isEmpty()) {
+            return false;
+        }
+        try {
+            docker.stopContainer(containerId, 0);
+            return true;
+        } catch (DockerException | InterruptedException e) {
+            log.error("Failed to stop container [taskId:{}, containerId:{}]", taskId, containerId);
+        }
+        return false;
+    }
 
-    String getContainerLogs(String taskId) {
+    /*
+     * Writes the logs of the container to the file as they are produced.
+     * Blocks until the container exits (end of the log stream).
+     * */
+    boolean followContainerLogs(String taskId, ContainerLogFile logFile) {
         String containerId = getContainerId(taskId);
-        if (!containerId.isEmpty()) {
-            try {
-                return docker.logs(containerId, com.spotify.docker.client.DockerClient.LogsParam.stdout(), com.spotify.docker.client.DockerClient.LogsParam.stderr()).readFully();
-            } catch (DockerException | InterruptedException e) {
-                log.error("Failed to get logs of computation [taskId:{}, containerId:{}]",
-                        taskId, containerId);
+        if (containerId.isEmpty()) {
+            return false;
+        }
+        try (LogStream logStream = docker.logs(containerId, LogsParam.follow(), LogsParam.stdout(), LogsParam.stderr())) {
+            while (logStream.hasNext()) {
+                logFile.write(logStream.next().content());
             }
+            return true;
+        } catch (DockerException | InterruptedException | IOException e) {
+            log.error("Failed to follow logs of computation [taskId:{}, containerId:{}, exception:{}]",
+                    taskId, containerId, e.getMessage());
         }
-        return "Failed to get logs of computation";
+        return false;
     }
 
     InputStream getContainerResultArchive(String taskId) {
@@ -15,6 +15,7 @@ import org.apache.commons.compress.utils.IOUtils;
 import org.springframework.stereotype.Service;
 import org.web3j.crypto.Hash;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -24,7 +25,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
 
 import static com.iexec.common.utils.BytesUtils.bytesToString;
 import static com.iexec.worker.docker.CustomDockerClient.getContainerConfig;
@@ -39,10 +43,18 @@ public class DockerComputationService {
     private static final String TEE_DOCKER_ENV_CHAIN_TASKID = "TASKID";
     private static final String TEE_DOCKER_ENV_WORKER_ADDRESS = "WORKER";
     private static final String STDOUT_FILENAME = "stdout.txt";
+    // time given to the log stream to end once the container has exited
+    private static final long LOGS_DRAIN_TIMEOUT = 10000;
+    // weight of the last pull in the average pull duration
+    private static final double PULL_DURATION_SMOOTHING = 0.3;
 
     private final CustomDockerClient dockerClient;
     private final WorkerConfigurationService configurationService;
     private final ResultService resultService;
+    private final ExecutorService logExecutor;
+    // last pull duration (ms) of each image, a cached image pulls in a fraction of its first pull
+    private final Map<String, Long> pullDurations;
+    private volatile double averagePullDuration;
 
     public DockerComputationService(CustomDockerClient dockerClient,
                                     WorkerConfigurationService configurationService,
@@ -50,13 +62,24 @@ public class DockerComputationService {
         this.dockerClient = dockerClient;
         this.configurationService = configurationService;
         this.resultService = resultService;
+        this.logExecutor = Executors.newCachedThreadPool();
+        this.pullDurations = new ConcurrentHashMap<>();
     }
 
-    public ResultInfo dockerRun(AvailableReplicateModel replicateModel) throws IOException {
+    @PreDestroy
+    void onPreDestroy() {
+        logExecutor.shutdownNow();
+    }
+
+    // isAborted is checked between the steps of the run, an aborted run skips the result packaging
+    public ResultInfo dockerRun(AvailableReplicateModel replicateModel, BooleanSupplier isAborted) throws IOException {
         String chainTaskId = replicateModel.getContributionAuthorization().getChainTaskId();
         String image = replicateModel.getAppUri();
         //TODO: check image equals image:tag
         String containerId = "";
+        if (isAborted.getAsBoolean()) {
+            throw new IOException("Computation aborted");
+        }
         if (dockerClient.isImagePulled(image)) {
             String volumeName = dockerClient.createVolume(chainTaskId);
             ContainerConfig containerConfig;
@@ -69,18 +92,23 @@ public class DockerComputationService {
                 containerConfig = getContainerConfig(image, replicateModel.getCmd(), volumeName);
             }
 
-            containerId = startComputation(chainTaskId, containerConfig, replicateModel.getTimeRef());
+            containerId = startComputation(chainTaskId, containerConfig, replicateModel.getTimeRef(), isAborted);
 
         } else {
             createStdoutFile(chainTaskId, "Failed to pull image");
         }
 
+        if (isAborted.getAsBoolean()) {
+            throw new IOException("Computation aborted");
+        }
         File zipFile = FileHelper.zipFolder(resultService.getResultFolderPath(chainTaskId));
         log.info("Zip file has been created [chainTaskId:{}, zipFile:{}]", chainTaskId, zipFile.getAbsolutePath());
 
         String hash = computeDeterministHash(chainTaskId);
         log.info("Determinist Hash has been computed [chainTaskId:{}, deterministHash:{}]", chainTaskId, hash);
 
+        resultService.storeResult(chainTaskId);
+
         return ResultInfo.builder()
                 .image(image)
                 .cmd(replicateModel.getCmd())
@@ -90,16 +118,38 @@ public class DockerComputationService {
                 .build();
     }
 
+    // the computation ends as if the container had exited
+    public boolean stopComputation(String chainTaskId) {
+        return dockerClient.stopContainer(chainTaskId);
+    }
+
     public boolean dockerPull(String chainTaskId, String image) {
-        return dockerClient.pullImage(chainTaskId, image);
+        long start = System.currentTimeMillis();
+        boolean isPulled = dockerClient.pullImage(chainTaskId, image);
+        if (isPulled) {
+            long duration = System.currentTimeMillis() - start;
+            pullDurations.put(image, duration);
+            averagePullDuration = averagePullDuration == 0 ? duration
+                    : PULL_DURATION_SMOOTHING * duration + (1 - PULL_DURATION_SMOOTHING) * averagePullDuration;
+        }
+        return isPulled;
+    }
+
+    // an image never pulled is expected to take as long as the average pull, 0 before any pull
+    public long getEstimatedPullDuration(String image) {
+        return pullDurations.getOrDefault(image, (long) averagePullDuration);
     }
 
-    private String startComputation(String chainTaskId, ContainerConfig containerConfig, Date maxExecutionTime) {
+    private String startComputation(String chainTaskId, ContainerConfig containerConfig, Date maxExecutionTime,
+                                    BooleanSupplier isAborted) {
         String containerId = dockerClient.startContainer(chainTaskId, containerConfig);
         if (!containerId.isEmpty()) {
             Date executionTimeout = Date.from(Instant.now().plusMillis(maxExecutionTime.getTime()));
             waitForComputation(chainTaskId, executionTimeout);
-            copyComputationResults(chainTaskId);
+            // the result of an aborted computation is not wanted, its folder is being removed
+            if (!isAborted.getAsBoolean()) {
+                copyComputationResults(chainTaskId);
+            }
 
             dockerClient.removeContainer(chainTaskId);
             dockerClient.removeVolume(chainTaskId);
@@ -152,14 +202,56 @@ public class DockerComputationService {
         return Optional.of(s);
     }
 
+    /*
+     * The logs are written to stdout.txt while the container runs, by a log thread which ends with the
+     * container.
+     * */
     private void waitForComputation(String chainTaskId, Date executionTimeout) {
+        ContainerLogFile logFile = openLogFile(chainTaskId);
+        Future<Boolean> logsFollowed = null;
+        if (logFile != null) {
+            logsFollowed = logExecutor.submit(() -> dockerClient.followContainerLogs(chainTaskId, logFile));
+        }
+
         boolean executionDone = dockerClient.waitContainer(chainTaskId, executionTimeout);
 
-        if (executionDone) {
-            String dockerLogs = dockerClient.getContainerLogs(chainTaskId);
-            createStdoutFile(chainTaskId, dockerLogs);
-        } else {
-            createStdoutFile(chainTaskId, "Computation failed");
+        if (logFile == null) {
+            createStdoutFile(chainTaskId, executionDone ? "Failed to get logs of computation" : "Computation failed");
+            return;
+        }
+        awaitLogs(chainTaskId, logsFollowed);
+        try {
+            if (!executionDone) {
+                logFile.write("\nComputation failed\n");
+            }
+            logFile.close();
+            log.info("Stdout file added to result folder [chainTaskId:{}, isTruncated:{}]",
+                    chainTaskId, logFile.isTruncated());
+        } catch (IOException e) {
+            log.error("Failed to write stdout file [chainTaskId:{}, exception:{}]", chainTaskId, e.getMessage());
+        }
+    }
+
+    private ContainerLogFile openLogFile(String chainTaskId) {
+        Path path = Paths.get(resultService.getResultFolderPath(chainTaskId), STDOUT_FILENAME);
+        try {
+            return new ContainerLogFile(path, configurationService.getStdoutMaxSize(),
+                    ContainerLogFile.Policy.valueOf(configurationService.getStdoutSizePolicy()));
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to open stdout file [chainTaskId:{}, exception:{}]", chainTaskId, e.getMessage());
+        }
+        return null;
+    }
+
+    private void awaitLogs(String chainTaskId, Future<Boolean> logsFollowed) {
+        try {
+            logsFollowed.get(LOGS_DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logsFollowed.cancel(true);
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Logs of computation may be incomplete [chainTaskId:{}]", chainTaskId);
+            logsFollowed.cancel(true);
         }
     }
 
@@ -0,0 +1,175 @@
+package com.iexec.worker.executor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Hashed timer wheel owning the deadlines of the worker (execution timeouts, chain deadlines), so no
+ * thread has to poll the clock for them.
+ * A single thread advances the wheel every tick and expires the timeouts of the current bucket; a timeout
+ * due in more than one rotation waits for its remaining rounds. Actions run on a separate pool since they
+ * may block (e.g. stopping a container).
+ * Timeouts fire at most one tick after their deadline.
+ * */
+@Slf4j
+@Service
+public class DeadlineTimer {
+
+    private static final long TICK_DURATION = 100;
+    private static final int WHEEL_SIZE = 512;
+
+    private final long tickDuration;
+    private final Queue<Timeout>[] wheel;
+    private final Queue<Timeout> pendingTimeouts;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService actionExecutor;
+    private final long startTime;
+    // only accessed by the ticker thread
+    private long tick;
+
+    public DeadlineTimer() {
+        this(TICK_DURATION, WHEEL_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    DeadlineTimer(long tickDuration, int wheelSize) {
+        this.tickDuration = tickDuration;
+        this.wheel = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.pendingTimeouts = new ConcurrentLinkedQueue<>();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "deadline-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.actionExecutor = Executors.newCachedThreadPool();
+        this.startTime = System.currentTimeMillis();
+        ticker.scheduleAtFixedRate(this::advance, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        ticker.shutdownNow();
+        actionExecutor.shutdownNow();
+    }
+
+    // deadline in ms since epoch, a past deadline fires at the next tick
+    public Timeout schedule(long deadline, Runnable action) {
+        Timeout timeout = new Timeout(deadline, action);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void advance() {
+        try {
+            long currentTick = (System.currentTimeMillis() - startTime) / tickDuration;
+            transferPendingTimeouts();
+            // catch up if the ticker has been late
+            while (tick <= currentTick) {
+                expireBucket(wheel[(int) (tick % wheel.length)]);
+                tick++;
+            }
+        } catch (Exception e) {
+            log.error("Failed to advance deadline timer [exception:{}]", e.getMessage());
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long deadlineTick = (timeout.deadline - startTime + tickDuration - 1) / tickDuration;
+            long targetTick = Math.max(tick, deadlineTick);
+            timeout.remainingRounds = (targetTick - tick) / wheel.length;
+            wheel[(int) (targetTick % wheel.length)].add(timeout);
+        }
+    }
+
+    private void expireBucket(Queue<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                iterator.remove();
+                fire(timeout);
+            }
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        if (!timeout.expire()) {
+            return;
+        }
+        actionExecutor.execute(() -> {
+            try {
+                timeout.action.run();
+            } catch (Exception e) {
+                log.error("Failed to run deadline action [deadline:{}, exception:{}]", timeout.deadline, e.getMessage());
+            }
+        });
+    }
+
+    public static class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final long deadline;
+        private final Runnable action;
+        private int state;
+        private long remainingRounds;
+
+        Timeout(long deadline, Runnable action) {
+            this.deadline = deadline;
+            this.action = action;
+            this.state = PENDING;
+        }
+
+        // returns false if the action has already been fired
+        public synchronized boolean cancel() {
+            if (state == PENDING) {
+                state = CANCELLED;
+            }
+            return state == CANCELLED;
+        }
+
+        public synchronized boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        synchronized boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private synchronized boolean expire() {
+            if (state != PENDING) {
+                return false;
+            }
+            state = EXPIRED;
+            return true;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+}
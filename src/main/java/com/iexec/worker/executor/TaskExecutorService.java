@@ -6,6 +6,7 @@ import com.iexec.common.dapp.DappType;
 import com.iexec.common.replicate.AvailableReplicateModel;
 import com.iexec.common.replicate.ReplicateStatus;
 import com.iexec.worker.chain.ContributionService;
+import com.iexec.worker.config.WorkerConfigurationService;
 import com.iexec.worker.docker.DockerComputationService;
 import com.iexec.worker.feign.CustomFeignClient;
 import com.iexec.worker.result.ResultInfo;
@@ -14,10 +15,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.web3j.crypto.Sign;
 
+import javax.annotation.PreDestroy;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static com.iexec.common.replicate.ReplicateStatus.*;
 
@@ -25,78 +33,243 @@ import static com.iexec.common.replicate.ReplicateStatus.*;
 @Service
 public class TaskExecutorService {
 
+    // shortest computation worth starting: a quick run, the result packaging and the contribution transaction
+    private static final long MIN_COMPUTATION_WINDOW = 30000;
+
     // external services
     private DockerComputationService dockerComputationService;
     private ResultService resultService;
     private ContributionService contributionService;
     private CustomFeignClient feignClient;
+    private DeadlineTimer deadlineTimer;
 
     // internal variables
     private int maxNbExecutions;
-    private ThreadPoolExecutor executor;
+    // CPU budget: one running container per core
+    private ThreadPoolExecutor computeExecutor;
+    // chain checks, image pull and contribution: mostly waiting on docker, the core or the chain
+    private ThreadPoolExecutor ioExecutor;
+    // replicates accepted and not computed yet
+    private AtomicInteger nbPendingComputations;
+    private Map<String, ReplicateExecution> executions;
 
     public TaskExecutorService(DockerComputationService dockerComputationService,
                                ContributionService contributionService,
                                ResultService resultService,
-                               CustomFeignClient feignClient) {
+                               CustomFeignClient feignClient,
+                               DeadlineTimer deadlineTimer,
+                               WorkerConfigurationService workerConfigurationService) {
         this.dockerComputationService = dockerComputationService;
         this.resultService = resultService;
         this.contributionService = contributionService;
         this.feignClient = feignClient;
+        this.deadlineTimer = deadlineTimer;
 
         maxNbExecutions = Runtime.getRuntime().availableProcessors() - 1;
-        executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(maxNbExecutions);
+        computeExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(maxNbExecutions);
+        ioExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(workerConfigurationService.getIoPoolSize());
+        nbPendingComputations = new AtomicInteger();
+        executions = new ConcurrentHashMap<>();
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        computeExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
     }
 
+    // replicates waiting for their contribution (or its transaction) do not hold a compute slot
     public boolean canAcceptMoreReplicate() {
-        return executor.getActiveCount() < maxNbExecutions;
+        return nbPendingComputations.get() < maxNbExecutions;
+    }
+
+    int getNbPendingComputations() {
+        return nbPendingComputations.get();
     }
 
-    public void addReplicate(AvailableReplicateModel replicateModel) {
+    /*
+     * The stages of a replicate run on the pool matching their kind: the I/O stages (chain checks, pull,
+     * contribution) on the I/O pool, only the computation on the compute pool.
+     * A replicate declined before its computation carries no result (null) and skips the next stages.
+     * The returned future completes once the replicate is over.
+     * */
+    public CompletableFuture<Void> addReplicate(AvailableReplicateModel replicateModel) {
         ContributionAuthorization contribAuth = replicateModel.getContributionAuthorization();
+        String chainTaskId = contribAuth.getChainTaskId();
+        Optional<DeadlineTimer.Timeout> contributionTimeout = scheduleContributionDeadline(chainTaskId);
+        nbPendingComputations.incrementAndGet();
+        ReplicateExecution execution = new ReplicateExecution(nbPendingComputations);
+        executions.put(chainTaskId, execution);
+
+        return CompletableFuture.supplyAsync(() -> runStage(execution, true, () -> prepareTask(replicateModel)), ioExecutor)
+                .thenApplyAsync(isReady -> isReady
+                        ? runStage(execution, false, () -> computeTask(execution, replicateModel))
+                        : null, computeExecutor)
+                .whenComplete((resultInfo, throwable) -> execution.releaseComputeSlot())
+                .thenAcceptAsync(resultInfo -> tryToContribute(execution, contribAuth, resultInfo), ioExecutor)
+                .whenComplete((result, throwable) -> {
+                    executions.remove(chainTaskId, execution);
+                    execution.releaseComputeSlot();
+                    contributionTimeout.ifPresent(DeadlineTimer.Timeout::cancel);
+                    if (execution.isCancelled()) {
+                        log.info("Replicate aborted [chainTaskId:{}]", chainTaskId);
+                    } else if (throwable != null) {
+                        log.error("Replicate failed [chainTaskId:{}, exception:{}]", chainTaskId, throwable.getMessage());
+                    }
+                    execution.ended.complete(null);
+                });
+    }
 
-        CompletableFuture.supplyAsync(() -> executeTask(replicateModel), executor)
-                .thenAccept(resultInfo -> tryToContribute(contribAuth, resultInfo));
+    /*
+     * Stops the replicate wherever it is: the image pull is interrupted, the container is stopped, the
+     * result is not packaged, the next stages are skipped and its compute slot is freed right away.
+     * The returned future completes once the replicate has stopped (right away if it is not in progress),
+     * after which its result folder is not written anymore.
+     * */
+    public CompletableFuture<Void> abortReplicate(String chainTaskId) {
+        ReplicateExecution execution = executions.get(chainTaskId);
+        if (execution == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        execution.cancel();
+        dockerComputationService.stopComputation(chainTaskId);
+        execution.releaseComputeSlot();
+        log.info("Aborting replicate [chainTaskId:{}]", chainTaskId);
+        return execution.ended;
+    }
+
+    /*
+     * The computation stage is not interrupted: the stopped container still has to be removed, which an
+     * interrupted thread could not do.
+     * */
+    private <T> T runStage(ReplicateExecution execution, boolean isInterruptible, Supplier<T> stage) {
+        if (!execution.enterStage(isInterruptible)) {
+            throw new CancellationException();
+        }
+        try {
+            return stage.get();
+        } finally {
+            execution.exitStage();
+            // an abort may have interrupted this pool thread during the stage
+            Thread.interrupted();
+        }
+    }
+
+    // a computation still running at the contribution deadline could not be contributed anyway
+    private Optional<DeadlineTimer.Timeout> scheduleContributionDeadline(String chainTaskId) {
+        return contributionService.getContributionDeadline(chainTaskId)
+                .map(deadline -> deadlineTimer.schedule(deadline, () -> {
+                    if (dockerComputationService.stopComputation(chainTaskId)) {
+                        log.warn("Contribution deadline reached, computation stopped [chainTaskId:{}]", chainTaskId);
+                    }
+                }));
     }
 
-    private ResultInfo executeTask(AvailableReplicateModel replicateModel) {
+    /*
+     * Returns true if the app is ready to be computed.
+     * The replicate is given back to the core before any pull or computation when it could not be
+     * contributed anyway: the contribution checks are run first, then the time left before the contribution
+     * deadline is compared to the expected pull duration.
+     * */
+    private boolean prepareTask(AvailableReplicateModel replicateModel) {
         String chainTaskId = replicateModel.getContributionAuthorization().getChainTaskId();
 
-        if (contributionService.isChainTaskInitialized(chainTaskId)) {
-            feignClient.updateReplicateStatus(chainTaskId, RUNNING);
-
-            if (replicateModel.getAppType().equals(DappType.DOCKER)) {
-
-                feignClient.updateReplicateStatus(chainTaskId, APP_DOWNLOADING);
-                boolean isImagePulled = dockerComputationService.dockerPull(chainTaskId, replicateModel.getAppUri());
-                if (isImagePulled) {
-                    feignClient.updateReplicateStatus(chainTaskId, APP_DOWNLOADED);
-                } else {
-                    feignClient.updateReplicateStatus(chainTaskId, APP_DOWNLOAD_FAILED);
-                    return new ResultInfo();
-                }
-
-                feignClient.updateReplicateStatus(chainTaskId, COMPUTING);
-                try {
-                    ResultInfo resultInfo = dockerComputationService.dockerRun(replicateModel);
-                    resultService.addResultInfo(chainTaskId, resultInfo);
-                    feignClient.updateReplicateStatus(chainTaskId, COMPUTED);
-                    return resultInfo;
-                } catch (Exception e) {
-                    log.error("Error in the run of the application [error:{}]", e.getMessage());
-                }
-            }
-        } else {
+        Optional<ReplicateStatus> canContributeStatus = contributionService.getCanContributeStatus(chainTaskId);
+        if (!canContributeStatus.isPresent()) {
             log.warn("Task NOT initialized on chain [chainTaskId:{}]", chainTaskId);
+            return false;
+        }
+        // progress updates are not waited for, they are sent in order before the next ones
+        feignClient.updateReplicateStatusAsync(chainTaskId, RUNNING);
+
+        if (!canContributeStatus.get().equals(CAN_CONTRIBUTE)) {
+            log.warn("Cant contribute, replicate not computed [chainTaskId:{}, status:{}]",
+                    chainTaskId, canContributeStatus.get());
+            feignClient.updateReplicateStatusAsync(chainTaskId, canContributeStatus.get());
+            return false;
+        }
+
+        if (!canFinishBeforeContributionDeadline(replicateModel)) {
+            feignClient.updateReplicateStatusAsync(chainTaskId, CANT_CONTRIBUTE_SINCE_AFTER_DEADLINE);
+            return false;
+        }
+
+        if (!replicateModel.getAppType().equals(DappType.DOCKER)) {
+            return false;
+        }
+        feignClient.updateReplicateStatusAsync(chainTaskId, APP_DOWNLOADING);
+        boolean isImagePulled = dockerComputationService.dockerPull(chainTaskId, replicateModel.getAppUri());
+        if (!isImagePulled) {
+            feignClient.updateReplicateStatusAsync(chainTaskId, APP_DOWNLOAD_FAILED);
+            return false;
         }
-        return new ResultInfo();
+        feignClient.updateReplicateStatusAsync(chainTaskId, APP_DOWNLOADED);
+        return true;
     }
 
-    private void tryToContribute(ContributionAuthorization contribAuth, ResultInfo resultInfo) {
-        if (resultInfo.getDeterministHash().isEmpty()) {
-            return;
+    /*
+     * The time reference is the maximum execution time, not the expected one: a replicate which could
+     * exceed the deadline is still computed (and stopped at the deadline if needed), only the ones which
+     * cannot even pull, run shortly and contribute in time are declined.
+     * */
+    private boolean canFinishBeforeContributionDeadline(AvailableReplicateModel replicateModel) {
+        String chainTaskId = replicateModel.getContributionAuthorization().getChainTaskId();
+        Optional<Long> contributionDeadline = contributionService.getContributionDeadline(chainTaskId);
+        if (!contributionDeadline.isPresent()) {
+            return true;
+        }
+        long timeLeft = contributionDeadline.get() - System.currentTimeMillis();
+        long estimatedPullDuration = dockerComputationService.getEstimatedPullDuration(replicateModel.getAppUri());
+        if (timeLeft < estimatedPullDuration + MIN_COMPUTATION_WINDOW) {
+            log.warn("Cant finish before contribution deadline, replicate not computed [chainTaskId:{}, " +
+                    "timeLeft:{}, estimatedPullDuration:{}]", chainTaskId, timeLeft, estimatedPullDuration);
+            return false;
+        }
+        long maxExecutionTime = replicateModel.getTimeRef().getTime();
+        if (timeLeft < estimatedPullDuration + maxExecutionTime) {
+            log.info("Computation may be stopped at contribution deadline [chainTaskId:{}, timeLeft:{}, " +
+                    "maxExecutionTime:{}]", chainTaskId, timeLeft, maxExecutionTime);
+        }
+        return true;
+    }
+
+    private ResultInfo computeTask(ReplicateExecution execution, AvailableReplicateModel replicateModel) {
+        String chainTaskId = replicateModel.getContributionAuthorization().getChainTaskId();
+
+        feignClient.updateReplicateStatusAsync(chainTaskId, COMPUTING);
+        ResultInfo resultInfo;
+        try {
+            resultInfo = dockerComputationService.dockerRun(replicateModel, execution::isCancelled);
+        } catch (Exception e) {
+            if (!execution.isCancelled()) {
+                log.error("Error in the run of the application [error:{}]", e.getMessage());
+                return new ResultInfo();
+            }
+            resultInfo = null;
+        }
+        // stopped early (the run fails once aborted) or aborted right after the run: no result either way
+        if (execution.isCancelled()) {
+            log.info("Computation aborted, no result [chainTaskId:{}]", chainTaskId);
+            return new ResultInfo();
         }
+        resultService.addResultInfo(chainTaskId, resultInfo);
+        feignClient.updateReplicateStatusAsync(chainTaskId, COMPUTED);
+        return resultInfo;
+    }
+
+    // not interrupted: a contribution transaction is not stopped half way
+    private void tryToContribute(ReplicateExecution execution, ContributionAuthorization contribAuth,
+                                 ResultInfo resultInfo) {
         String chainTaskId = contribAuth.getChainTaskId();
+        if (resultInfo == null) {
+            log.info("Replicate declined before computation [chainTaskId:{}]", chainTaskId);
+            return;
+        }
+        // no hash: the computation failed
+        if (execution.isCancelled() || resultInfo.getDeterministHash() == null
+                || resultInfo.getDeterministHash().isEmpty()) {
+            return;
+        }
         Sign.SignatureData enclaveSignatureData = contributionService.getEnclaveSignatureData(contribAuth, resultInfo);
 
         Optional<ReplicateStatus> canContributeStatus = contributionService.getCanContributeStatus(chainTaskId);
@@ -111,19 +284,71 @@ public class TaskExecutorService {
             return;
         }
 
+        // only this replicate is dropped, the ones in flight can still be revealed
         if (!contributionService.hasEnoughGas()) {
             feignClient.updateReplicateStatus(chainTaskId, OUT_OF_GAS);
-            System.exit(0);
+            return;
         }
 
+        if (execution.isCancelled()) {
+            return;
+        }
         feignClient.updateReplicateStatus(chainTaskId, CONTRIBUTING);
 
         ChainReceipt chainReceipt = contributionService.contribute(contribAuth, resultInfo.getDeterministHash(), enclaveSignatureData);
         if (chainReceipt == null) {
-            feignClient.updateReplicateStatus(chainTaskId, CONTRIBUTE_FAILED);
+            // e.g. not sent since it would revert: the state which made it revert gives the precise status
+            Optional<ReplicateStatus> failureStatus = contributionService.getCanContributeStatus(chainTaskId)
+                    .filter(status -> !status.equals(CAN_CONTRIBUTE));
+            feignClient.updateReplicateStatus(chainTaskId, failureStatus.orElse(CONTRIBUTE_FAILED));
             return;
         }
 
         feignClient.updateReplicateStatus(chainTaskId, CONTRIBUTED, chainReceipt);
     }
+
+    private static class ReplicateExecution {
+
+        private final AtomicInteger nbPendingComputations;
+        private final AtomicBoolean isComputeSlotHeld;
+        private final CompletableFuture<Void> ended;
+        private volatile boolean isCancelled;
+        private Thread stageThread;
+
+        ReplicateExecution(AtomicInteger nbPendingComputations) {
+            this.nbPendingComputations = nbPendingComputations;
+            this.isComputeSlotHeld = new AtomicBoolean(true);
+            this.ended = new CompletableFuture<>();
+        }
+
+        boolean isCancelled() {
+            return isCancelled;
+        }
+
+        synchronized boolean enterStage(boolean isInterruptible) {
+            if (isCancelled) {
+                return false;
+            }
+            stageThread = isInterruptible ? Thread.currentThread() : null;
+            return true;
+        }
+
+        synchronized void exitStage() {
+            stageThread = null;
+        }
+
+        // the stage thread is only interrupted while it runs a stage of this replicate
+        synchronized void cancel() {
+            isCancelled = true;
+            if (stageThread != null) {
+                stageThread.interrupt();
+            }
+        }
+
+        void releaseComputeSlot() {
+            if (isComputeSlotHeld.compareAndSet(true, false)) {
+                nbPendingComputations.decrementAndGet();
+            }
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package com.iexec.worker.feign;
+
+/*
+ * Classes of calls to the core, each with its own retry bound and bulkhead.
+ * A call which is not retried is not queued either when its bulkhead is full: it is done again at the
+ * next period by its caller.
+ * */
+public enum CoreCallClass {
+
+    // version, configuration and registration: the worker can not run without them
+    BOOTSTRAP(0, 2),
+    // challenge and login, done by a single caller at a time
+    AUTH(0, 1),
+    // replicate status updates must reach the core
+    STATUS(0, 4),
+    // ping, available replicate, tasks in progress
+    POLLING(1, 2);
+
+    // 0 is unbounded
+    private final int maxAttempts;
+    private final int maxConcurrentCalls;
+
+    CoreCallClass(int maxAttempts, int maxConcurrentCalls) {
+        this.maxAttempts = maxAttempts;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    boolean canRetry(int attempt) {
+        return maxAttempts == 0 || attempt < maxAttempts;
+    }
+
+    boolean isQueuedWhenBusy() {
+        return maxAttempts != 1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.iexec.worker.feign;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/*
+ * Failure handling shared by all the calls to the core:
+ * - retries (iterative) with an exponential backoff and full jitter, bounded by the class of the call,
+ * - a circuit breaker per endpoint: after consecutive failures, calls fail fast until a single trial call
+ * goes through, so a core coming back is not hit by every waiting call at once,
+ * - a bulkhead per class of call, so polling can not take the connections needed by status updates,
+ * - a fallback value when the call fails for good.
+ * Only unreachable core (no status), 429 and 5xx are retried; other errors go to the fallback right away.
+ * */
+@Slf4j
+@Service
+public class CoreCallPolicy {
+
+    private static final long BASE_BACKOFF = 1000;
+    private static final long MAX_BACKOFF = 60000;
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_OPEN_DURATION = 10000;
+
+    private MeterRegistry meterRegistry;
+    private final Map<String, CircuitBreaker> breakers;
+    private final Map<CoreCallClass, Semaphore> bulkheads;
+
+    public CoreCallPolicy(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.breakers = new ConcurrentHashMap<>();
+        this.bulkheads = new EnumMap<>(CoreCallClass.class);
+        for (CoreCallClass callClass : CoreCallClass.values()) {
+            bulkheads.put(callClass, new Semaphore(callClass.getMaxConcurrentCalls()));
+        }
+    }
+
+    public <T> T execute(String endpoint, CoreCallClass callClass, Supplier<T> call, Supplier<T> fallback) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint, this::createBreaker);
+        Semaphore bulkhead = bulkheads.get(callClass);
+        int attempt = 0;
+
+        while (true) {
+            attempt++;
+            long backoff = getBackoff(attempt);
+
+            if (!breaker.allowRequest()) {
+                if (!callClass.canRetry(attempt)) {
+                    log.debug("Core call rejected, circuit open [endpoint:{}]", endpoint);
+                    return fallback.get();
+                }
+                // wait for the trial call to be allowed
+                if (!sleep(Math.max(backoff, breaker.getRemainingOpenTime()))) {
+                    return fallback.get();
+                }
+                continue;
+            }
+
+            try {
+                if (!acquire(bulkhead, callClass)) {
+                    breaker.onCancel();
+                    log.warn("Core call rejected, too many calls in flight [endpoint:{}, class:{}]",
+                            endpoint, callClass);
+                    return fallback.get();
+                }
+            } catch (InterruptedException e) {
+                breaker.onCancel();
+                Thread.currentThread().interrupt();
+                return fallback.get();
+            }
+
+            FeignException failure;
+            try {
+                T result = call.get();
+                breaker.onSuccess();
+                return result;
+            } catch (FeignException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                // not a transport error (e.g. decoding), left to the caller
+                breaker.onCancel();
+                throw e;
+            } finally {
+                bulkhead.release();
+            }
+
+            if (!isRetriable(failure)) {
+                // the core answered
+                breaker.onSuccess();
+                log.error("Core call failed [endpoint:{}, status:{}]", endpoint, failure.status());
+                return fallback.get();
+            }
+
+            breaker.onFailure();
+            if (!callClass.canRetry(attempt)) {
+                log.error("Core call failed [endpoint:{}, status:{}, attempts:{}]", endpoint, failure.status(), attempt);
+                return fallback.get();
+            }
+            log.warn("Core call failed, will retry [endpoint:{}, status:{}, attempt:{}, backoff:{}]",
+                    endpoint, failure.status(), attempt, backoff);
+            if (!sleep(backoff)) {
+                return fallback.get();
+            }
+        }
+    }
+
+    public boolean isCircuitOpen(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        return breaker != null && breaker.isOpen();
+    }
+
+    static boolean isRetriable(FeignException e) {
+        int status = e.status();
+        return status <= 0 || status == 429 || status >= 500;
+    }
+
+    // full jitter: uniform in [0, min(max, base * 2^(attempt - 1))]
+    static long getBackoff(int attempt) {
+        long ceiling = BASE_BACKOFF << Math.min(attempt - 1, 16);
+        return ThreadLocalRandom.current().nextLong(Math.min(MAX_BACKOFF, ceiling) + 1);
+    }
+
+    private boolean acquire(Semaphore bulkhead, CoreCallClass callClass) throws InterruptedException {
+        if (callClass.isQueuedWhenBusy()) {
+            bulkhead.acquire();
+            return true;
+        }
+        return bulkhead.tryAcquire();
+    }
+
+    private boolean sleep(long duration) {
+        try {
+            Thread.sleep(duration);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private CircuitBreaker createBreaker(String endpoint) {
+        Counter openings = Counter.builder("iexec.core.breaker.openings")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        CircuitBreaker breaker = new CircuitBreaker(endpoint, BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_DURATION,
+                openings);
+        Gauge.builder("iexec.core.breaker.open", breaker, b -> b.isOpen() ? 1 : 0)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    static class CircuitBreaker {
+
+        private enum State {CLOSED, OPEN, HALF_OPEN}
+
+        private final String endpoint;
+        private final int failureThreshold;
+        private final long openDuration;
+        private final Counter openings;
+        private State state;
+        private int consecutiveFailures;
+        private long openUntil;
+
+        CircuitBreaker(String endpoint, int failureThreshold, long openDuration, Counter openings) {
+            this.endpoint = endpoint;
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+            this.openings = openings;
+            this.state = State.CLOSED;
+        }
+
+        synchronized boolean allowRequest() {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+                // this call is the trial, the others are still rejected
+                state = State.HALF_OPEN;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                log.info("Core circuit closed [endpoint:{}]", endpoint);
+            }
+            state = State.CLOSED;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = State.OPEN;
+                openUntil = System.currentTimeMillis() + openDuration;
+                openings.increment();
+                log.warn("Core circuit opened [endpoint:{}, consecutiveFailures:{}]", endpoint, consecutiveFailures);
+            }
+        }
+
+        // the call allowed by allowRequest() has not been done
+        synchronized void onCancel() {
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+            }
+        }
+
+        synchronized boolean isOpen() {
+            return state != State.CLOSED;
+        }
+
+        synchronized long getRemainingOpenTime() {
+            return Math.max(0, openUntil - System.currentTimeMillis());
+        }
+    }
+}
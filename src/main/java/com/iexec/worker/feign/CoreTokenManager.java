@@ -0,0 +1,179 @@
+package com.iexec.worker.feign;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iexec.worker.chain.CredentialsService;
+import com.iexec.worker.security.SignatureService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Holds the JWT used to call the core.
+ * Only one login (challenge, signature, login) is in flight at a time: concurrent callers needing a new
+ * token wait for it instead of each logging in and overwriting the others' token.
+ * The token is renewed in the background shortly before its expiry (exp claim), so callers keep using the
+ * current one meanwhile and the login is not done on their path.
+ * */
+@Slf4j
+@Service
+public class CoreTokenManager {
+
+    private static final String TOKEN_PREFIX = "Bearer ";
+    private static final long RENEWAL_MARGIN = TimeUnit.MINUTES.toMillis(1);
+
+    private CoreWorkerClient coreWorkerClient;
+    private CredentialsService credentialsService;
+    private SignatureService signatureService;
+    private CoreCallPolicy coreCallPolicy;
+    private ScheduledExecutorService renewalExecutor;
+    private ObjectMapper mapper;
+
+    private final Object lock = new Object();
+    private volatile String currentToken;
+    private CompletableFuture<String> refreshInFlight;
+    private ScheduledFuture<?> scheduledRenewal;
+
+    public CoreTokenManager(CoreWorkerClient coreWorkerClient,
+                            CredentialsService credentialsService,
+                            SignatureService signatureService,
+                            CoreCallPolicy coreCallPolicy) {
+        this.coreWorkerClient = coreWorkerClient;
+        this.credentialsService = credentialsService;
+        this.signatureService = signatureService;
+        this.coreCallPolicy = coreCallPolicy;
+        this.renewalExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.mapper = new ObjectMapper();
+        this.currentToken = "";
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        renewalExecutor.shutdownNow();
+    }
+
+    public String getToken() {
+        String token = currentToken;
+        if (!token.isEmpty()) {
+            return token;
+        }
+        return refresh(token);
+    }
+
+    /*
+     * To be called with the token rejected by the core (401). If it has already been replaced, the new
+     * token is returned without logging in again.
+     * */
+    public String renewToken(String rejectedToken) {
+        return refresh(rejectedToken);
+    }
+
+    public void expireToken() {
+        synchronized (lock) {
+            currentToken = "";
+        }
+    }
+
+    private String refresh(String staleToken) {
+        CompletableFuture<String> refresh;
+        boolean isOwner = false;
+        synchronized (lock) {
+            if (!currentToken.equals(staleToken)) {
+                return currentToken;
+            }
+            if (refreshInFlight == null) {
+                refreshInFlight = new CompletableFuture<>();
+                isOwner = true;
+            }
+            refresh = refreshInFlight;
+        }
+
+        if (isOwner) {
+            String token = "";
+            try {
+                token = login();
+            } finally {
+                synchronized (lock) {
+                    currentToken = token;
+                    refreshInFlight = null;
+                }
+                refresh.complete(token);
+                scheduleRenewal(token);
+            }
+        }
+        return refresh.join();
+    }
+
+    private String login() {
+        String workerAddress = credentialsService.getCredentials().getAddress();
+        String challenge = getChallenge(workerAddress);
+        if (challenge == null) {
+            return "";
+        }
+        String jwt = login(workerAddress, challenge);
+        if (jwt == null || jwt.isEmpty()) {
+            return "";
+        }
+        log.info("Logged in to the core [expiration:{}]", getExpirationTime(jwt));
+        return TOKEN_PREFIX + jwt;
+    }
+
+    private void scheduleRenewal(String token) {
+        synchronized (lock) {
+            if (scheduledRenewal != null) {
+                scheduledRenewal.cancel(false);
+                scheduledRenewal = null;
+            }
+            long expirationTime = getExpirationTime(token);
+            if (expirationTime <= 0 || renewalExecutor.isShutdown()) {
+                return;
+            }
+            long validity = expirationTime - System.currentTimeMillis();
+            long delay = Math.max(0, validity - Math.min(RENEWAL_MARGIN, validity / 2));
+            scheduledRenewal = renewalExecutor.schedule(() -> renewInBackground(token), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void renewInBackground(String token) {
+        try {
+            log.debug("Renewing core token before its expiry");
+            refresh(token);
+        } catch (Exception e) {
+            log.error("Failed to renew core token [exception:{}]", e.getMessage());
+        }
+    }
+
+    // expiration of a "Bearer <jwt>" token in ms, 0 if unknown
+    long getExpirationTime(String token) {
+        String jwt = token.startsWith(TOKEN_PREFIX) ? token.substring(TOKEN_PREFIX.length()) : token;
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) {
+            return 0;
+        }
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+            JsonNode claims = mapper.readTree(payload);
+            return claims.path("exp").asLong(0) * 1000;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private String getChallenge(String workerAddress) {
+        return coreCallPolicy.execute("getChallenge", CoreCallClass.AUTH,
+                () -> coreWorkerClient.getChallenge(workerAddress), () -> null);
+    }
+
+    private String login(String workerAddress, String challenge) {
+        return coreCallPolicy.execute("login", CoreCallClass.AUTH,
+                () -> coreWorkerClient.login(workerAddress, signatureService.hashAndSign(challenge)), () -> null);
+    }
+}
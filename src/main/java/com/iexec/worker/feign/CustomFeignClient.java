@@ -5,210 +5,205 @@ import com.iexec.common.chain.ContributionAuthorization;
 import com.iexec.common.config.PublicConfiguration;
 import com.iexec.common.config.WorkerConfigurationModel;
 import com.iexec.common.replicate.ReplicateStatus;
-import com.iexec.common.security.Signature;
-import com.iexec.worker.chain.CredentialsService;
-import com.iexec.worker.config.CoreConfigurationService;
-import com.iexec.worker.security.SignatureService;
+import com.iexec.worker.config.WorkerConfigurationService;
 import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * Facade of the core clients. The calls go through pooled keep-alive connections (see feign.okhttp in the
+ * configuration). Replicate status updates can be sent asynchronously on a small I/O pool so compute
+ * threads do not wait on the core; updates of a same task are still sent in order. Blocking updates are
+ * sent on the caller's thread, so they never wait for a pool busy retrying other updates.
+ * The last status sent for each task is kept, to be sent again to a core which may have missed it
+ * (e.g. sent while it was restarting).
+ * Failures are handled by the CoreCallPolicy (retries, circuit breakers, bulkheads, fallbacks).
+ * */
 @Service
 @Slf4j
 public class CustomFeignClient {
 
+    // tasks whose last status is kept, the least recently updated are forgotten
+    private static final int LAST_STATUSES_SIZE = 1000;
 
-    private static final int RETRY_TIME = 5000;
-    private static final String TOKEN_PREFIX = "Bearer ";
-    private final String url;
     private CoreWorkerClient coreWorkerClient;
     private CoreTaskClient coreTaskClient;
-    private CredentialsService credentialsService;
-    private SignatureService signatureService;
-    private String currentToken;
+    private CoreTokenManager coreTokenManager;
+    private CoreCallPolicy coreCallPolicy;
+    private ExecutorService coreIoExecutor;
+    private final Map<String, CompletableFuture<Void>> pendingStatusUpdates;
+    private final Map<String, LastStatus> lastStatuses;
 
     public CustomFeignClient(CoreWorkerClient coreWorkerClient,
                              CoreTaskClient coreTaskClient,
-                             CoreConfigurationService coreConfigurationService,
-                             CredentialsService credentialsService,
-                             SignatureService signatureService) {
-        this.credentialsService = credentialsService;
-        this.signatureService = signatureService;
+                             CoreTokenManager coreTokenManager,
+                             CoreCallPolicy coreCallPolicy,
+                             WorkerConfigurationService workerConfigurationService) {
+        this.coreTokenManager = coreTokenManager;
+        this.coreCallPolicy = coreCallPolicy;
         this.coreWorkerClient = coreWorkerClient;
         this.coreTaskClient = coreTaskClient;
-        this.url = coreConfigurationService.getUrl();
-        this.currentToken = "";
+        this.coreIoExecutor = Executors.newFixedThreadPool(workerConfigurationService.getCoreIoPoolSize());
+        this.pendingStatusUpdates = new HashMap<>();
+        this.lastStatuses = Collections.synchronizedMap(new LinkedHashMap<String, LastStatus>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LastStatus> eldest) {
+                return size() > LAST_STATUSES_SIZE;
+            }
+        });
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        coreIoExecutor.shutdown();
     }
 
     public PublicConfiguration getPublicConfiguration() {
-        try {
-            return coreWorkerClient.getPublicConfiguration();
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to getPublicConfiguration, will retry");
-                sleep();
-                return getPublicConfiguration();
-            }
-        }
-        return null;
+        return coreCallPolicy.execute("getPublicConfiguration", CoreCallClass.BOOTSTRAP,
+                coreWorkerClient::getPublicConfiguration, () -> null);
     }
 
     public String getCoreVersion() {
-        try {
-            return coreWorkerClient.getCoreVersion();
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to getCoreVersion, will retry");
-                sleep();
-                return getCoreVersion();
-            }
-        }
-        return null;
+        return coreCallPolicy.execute("getCoreVersion", CoreCallClass.BOOTSTRAP,
+                coreWorkerClient::getCoreVersion, () -> null);
     }
 
     public String ping() {
-        try {
-            return coreWorkerClient.ping(getToken());
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to ping [instance:{}]", url);
-            } else if (HttpStatus.valueOf(e.status()).equals(HttpStatus.UNAUTHORIZED)) {
-                generateNewToken();
-                return coreWorkerClient.ping(getToken());
-            }
-        }
-
-        return "";
+        return executeWithToken("ping", CoreCallClass.POLLING,
+                coreWorkerClient::ping, () -> "");
     }
 
-    public void registerWorker(WorkerConfigurationModel model) {
-        try {
-            coreWorkerClient.registerWorker(getToken(), model);
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to registerWorker, will retry [instance:{}]", url);
-                sleep();
-                registerWorker(model);
-            } else if (HttpStatus.valueOf(e.status()).equals(HttpStatus.UNAUTHORIZED)) {
-                generateNewToken();
-                coreWorkerClient.registerWorker(getToken(), model);
-            }
-        }
+    public boolean registerWorker(WorkerConfigurationModel model) {
+        return executeWithToken("registerWorker", CoreCallClass.BOOTSTRAP, token -> {
+            coreWorkerClient.registerWorker(token, model);
+            return true;
+        }, () -> false);
     }
 
-    public List<String> getTasksInProgress(){
-        try {
-            return coreWorkerClient.getCurrentTasks(getToken());
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to get tasks in progress, will retry [instance:{}]", url);
-                sleep();
-            } else if (HttpStatus.valueOf(e.status()).equals(HttpStatus.UNAUTHORIZED)) {
-                generateNewToken();
-                return coreWorkerClient.getCurrentTasks(getToken());
-            }
-        }
-
-        return Collections.emptyList();
+    // null if the core could not be reached, not to be taken for no task in progress
+    public List<String> getTasksInProgress() {
+        return executeWithToken("getTasksInProgress", CoreCallClass.POLLING,
+                coreWorkerClient::getCurrentTasks, () -> null);
     }
 
     public ContributionAuthorization getAvailableReplicate() {
-        try {
-            return coreTaskClient.getAvailableReplicate(getToken());
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to getAvailableReplicate [instance:{}]", url);
-            } else if (HttpStatus.valueOf(e.status()).equals(HttpStatus.UNAUTHORIZED)) {
-                generateNewToken();
-                return coreTaskClient.getAvailableReplicate(getToken());
-            }
-        }
-        return null;
+        return executeWithToken("getAvailableReplicate", CoreCallClass.POLLING,
+                coreTaskClient::getAvailableReplicate, () -> null);
     }
 
     public void updateReplicateStatus(String chainTaskId, ReplicateStatus status) {
         updateReplicateStatus(chainTaskId, status, null);
     }
 
+    // sent on the caller's thread, once the previous updates of the task are done
     public void updateReplicateStatus(String chainTaskId, ReplicateStatus status, ChainReceipt chainReceipt) {
-        log.info(status.toString() + " [chainTaskId:{}]", chainTaskId);
-
-        // chainReceipt should not be null since it goes in the request body
-        if (chainReceipt == null) {
-            chainReceipt = ChainReceipt.builder().build();
-        }
-
+        CompletableFuture<Void> update = new CompletableFuture<>();
+        CompletableFuture<Void> previous = registerStatusUpdate(chainTaskId, update);
         try {
-            coreTaskClient.updateReplicateStatus(chainTaskId, status, getToken(), chainReceipt);
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to updateReplicateStatus, will retry [instance:{}]", url);
-                sleep();
-                updateReplicateStatus(chainTaskId, status, chainReceipt);
-                return;
-            }
-
-            if (HttpStatus.valueOf(e.status()).equals(HttpStatus.UNAUTHORIZED)) {
-                generateNewToken();
-                log.info(status.toString() + " [chainTaskId:{}]", chainTaskId);
-                coreTaskClient.updateReplicateStatus(chainTaskId, status, getToken(), chainReceipt);
-            }
+            previous.join();
+            sendReplicateStatus(chainTaskId, status, chainReceipt);
+            update.complete(null);
+        } catch (RuntimeException e) {
+            log.error("Failed to updateReplicateStatus [chainTaskId:{}, status:{}, exception:{}]",
+                    chainTaskId, status, e.getMessage());
+            update.completeExceptionally(e);
         }
     }
 
-    private String getChallenge(String workerAddress) {
-        try {
-            return coreWorkerClient.getChallenge(workerAddress);
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to getChallenge, will retry [instance:{}]", url);
-                sleep();
-                return getChallenge(workerAddress);
-            }
-        }
-        return null;
+    public CompletableFuture<Void> updateReplicateStatusAsync(String chainTaskId, ReplicateStatus status) {
+        return updateReplicateStatusAsync(chainTaskId, status, null);
     }
 
-    private String login(String workerAddress, Signature signature) {
-        try {
-            return coreWorkerClient.login(workerAddress, signature);
-        } catch (FeignException e) {
-            if (e.status() == 0) {
-                log.error("Failed to login, will retry [instance:{}]", url);
-                sleep();
-                return login(workerAddress, signature);
-            }
-        }
-        return null;
+    // the update is sent after the previous updates of the task, whatever their outcome
+    public CompletableFuture<Void> updateReplicateStatusAsync(String chainTaskId, ReplicateStatus status,
+                                                              ChainReceipt chainReceipt) {
+        CompletableFuture<Void> update = new CompletableFuture<>();
+        registerStatusUpdate(chainTaskId, update)
+                .thenRunAsync(() -> sendReplicateStatus(chainTaskId, status, chainReceipt), coreIoExecutor)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        update.completeExceptionally(throwable);
+                    } else {
+                        update.complete(null);
+                    }
+                });
+        return update;
     }
 
-    private void sleep() {
-        try {
-            Thread.sleep(RETRY_TIME);
-        } catch (InterruptedException e) {
+    // sends the last status of the task again (asynchronously), if any
+    public void resendLastReplicateStatus(String chainTaskId) {
+        LastStatus lastStatus = lastStatuses.get(chainTaskId);
+        if (lastStatus != null) {
+            updateReplicateStatusAsync(chainTaskId, lastStatus.status, lastStatus.chainReceipt);
         }
     }
 
-    private String getToken() {
-        if (currentToken.isEmpty()) {
-            String workerAddress = credentialsService.getCredentials().getAddress();
-            String challenge = getChallenge(workerAddress);
-            currentToken = TOKEN_PREFIX + login(workerAddress, signatureService.hashAndSign(challenge));
+    // makes update the last update of the task, returns a future completed once the previous one is done
+    private CompletableFuture<Void> registerStatusUpdate(String chainTaskId, CompletableFuture<Void> update) {
+        CompletableFuture<Void> previous;
+        synchronized (pendingStatusUpdates) {
+            previous = pendingStatusUpdates.put(chainTaskId, update);
+        }
+        update.whenComplete((result, throwable) -> {
+            synchronized (pendingStatusUpdates) {
+                pendingStatusUpdates.remove(chainTaskId, update);
+            }
+        });
+        if (previous == null) {
+            return CompletableFuture.completedFuture(null);
         }
-        return currentToken;
+        return previous.handle((result, throwable) -> null);
     }
 
-    private void expireToken() {
-        currentToken = "";
+    private void sendReplicateStatus(String chainTaskId, ReplicateStatus status, ChainReceipt chainReceipt) {
+        log.info(status.toString() + " [chainTaskId:{}]", chainTaskId);
+        lastStatuses.put(chainTaskId, new LastStatus(status, chainReceipt));
+
+        // chainReceipt should not be null since it goes in the request body
+        ChainReceipt body = chainReceipt != null ? chainReceipt : ChainReceipt.builder().build();
+
+        executeWithToken("updateReplicateStatus", CoreCallClass.STATUS, token -> {
+            coreTaskClient.updateReplicateStatus(chainTaskId, status, token, body);
+            return true;
+        }, () -> false);
     }
 
-    private String generateNewToken() {
-        expireToken();
-        return getToken();
+    // a call rejected with 401 is done again once with a renewed token
+    private <T> T executeWithToken(String endpoint, CoreCallClass callClass,
+                                   Function<String, T> call, Supplier<T> fallback) {
+        return coreCallPolicy.execute(endpoint, callClass, () -> {
+            String token = coreTokenManager.getToken();
+            try {
+                return call.apply(token);
+            } catch (FeignException e) {
+                if (e.status() != HttpStatus.UNAUTHORIZED.value()) {
+                    throw e;
+                }
+                return call.apply(coreTokenManager.renewToken(token));
+            }
+        }, fallback);
     }
 
+    private static class LastStatus {
+        private final ReplicateStatus status;
+        private final ChainReceipt chainReceipt;
+
+        LastStatus(ReplicateStatus status, ChainReceipt chainReceipt) {
+            this.status = status;
+            this.chainReceipt = chainReceipt;
+        }
+    }
 }
@@ -1,41 +1,63 @@
 package com.iexec.worker.pubsub;
 
+import com.iexec.common.chain.ChainContribution;
+import com.iexec.common.chain.ChainContributionStatus;
 import com.iexec.common.chain.ChainReceipt;
+import com.iexec.common.chain.ChainTask;
+import com.iexec.common.chain.ChainTaskStatus;
 import com.iexec.common.result.TaskNotification;
 import com.iexec.common.result.TaskNotificationType;
 import com.iexec.common.result.eip712.Eip712Challenge;
+import com.iexec.worker.chain.ChainHeadTracker;
+import com.iexec.worker.chain.ChainTaskEvent;
+import com.iexec.worker.chain.ChainTaskEventListener;
+import com.iexec.worker.chain.ChainTaskEventType;
+import com.iexec.worker.chain.GasBalanceService;
+import com.iexec.worker.chain.IexecHubService;
 import com.iexec.worker.chain.RevealService;
 import com.iexec.worker.config.CoreConfigurationService;
 import com.iexec.worker.config.PublicConfigurationService;
 import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.executor.DeadlineTimer;
+import com.iexec.worker.executor.TaskExecutorService;
 import com.iexec.worker.feign.CustomFeignClient;
 import com.iexec.worker.feign.ResultRepoClient;
 import com.iexec.worker.result.Eip712ChallengeService;
 import com.iexec.worker.result.ResultService;
+import com.iexec.worker.utils.ReconnectBackoff;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.stomp.*;
-import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static com.iexec.common.replicate.ReplicateStatus.*;
 
 @Slf4j
 @Service
-public class SubscriptionService extends StompSessionHandlerAdapter {
+public class SubscriptionService extends StompSessionHandlerAdapter implements ChainTaskEventListener {
+
+    private static final long RECONNECT_INITIAL_DELAY = 1000;
+    private static final long RECONNECT_MAX_DELAY = 60000;
+    private static final long HEARTBEAT_PERIOD = 10000;
+    // a notification published on both topics is received twice within this time
+    private static final long DUPLICATE_NOTIFICATION_WINDOW = 5000;
 
     private final String coreHost;
     private final int corePort;
@@ -44,13 +66,33 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
     private ResultRepoClient resultRepoClient;
     private ResultService resultService;
     private RevealService revealService;
+    private IexecHubService iexecHubService;
+    private GasBalanceService gasBalanceService;
     private CustomFeignClient feignClient;
     private Eip712ChallengeService eip712ChallengeService;
     private PublicConfigurationService publicConfigurationService;
+    private TaskNotificationExecutor taskNotificationExecutor;
+    private ChainHeadTracker chainHeadTracker;
+    private DeadlineTimer deadlineTimer;
+    private TaskExecutorService taskExecutorService;
     // internal components
     private StompSession session;
+    private Set<String> subscribedChainTaskIds;
     private Map<String, StompSession.Subscription> chainTaskIdToSubscription;
+    private StompSession.Subscription workerSubscription;
+    private boolean isWorkerTopicEnabled;
+    // set once the core has been seen publishing on the worker topic (older cores only publish on task topics)
+    private volatile boolean isWorkerTopicConfirmed;
+    private Map<String, TaskTopicNotification> lastTaskTopicNotifications;
+    private long duplicateNotificationWindow;
+    // a reveal can be triggered both by the core and by the chain events
+    private Set<String> revealedChainTaskIds;
+    // a task not completed at its final deadline is over on chain
+    private Map<String, DeadlineTimer.Timeout> finalDeadlineTimeouts;
     private WebSocketStompClient stompClient;
+    private ThreadPoolTaskScheduler taskScheduler;
+    private ReconnectBackoff reconnectBackoff;
+    private boolean hasBeenConnected;
     private String url;
 
     public SubscriptionService(CoreConfigurationService coreConfigurationService,
@@ -58,45 +100,100 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
                                ResultRepoClient resultRepoClient,
                                ResultService resultService,
                                RevealService revealService,
+                               IexecHubService iexecHubService,
+                               GasBalanceService gasBalanceService,
                                CustomFeignClient feignClient,
                                Eip712ChallengeService eip712ChallengeService,
-                               PublicConfigurationService publicConfigurationService) {
+                               PublicConfigurationService publicConfigurationService,
+                               TaskNotificationExecutor taskNotificationExecutor,
+                               ChainHeadTracker chainHeadTracker,
+                               DeadlineTimer deadlineTimer,
+                               TaskExecutorService taskExecutorService) {
         this.resultRepoClient = resultRepoClient;
         this.resultService = resultService;
         this.revealService = revealService;
+        this.iexecHubService = iexecHubService;
+        this.gasBalanceService = gasBalanceService;
         this.feignClient = feignClient;
         this.eip712ChallengeService = eip712ChallengeService;
         this.publicConfigurationService = publicConfigurationService;
+        this.taskNotificationExecutor = taskNotificationExecutor;
+        this.chainHeadTracker = chainHeadTracker;
+        this.deadlineTimer = deadlineTimer;
+        this.taskExecutorService = taskExecutorService;
 
         this.coreHost = coreConfigurationService.getHost();
         this.corePort = coreConfigurationService.getPort();
         this.workerWalletAddress = workerConfigurationService.getWorkerWalletAddress();
+        this.isWorkerTopicEnabled = workerConfigurationService.isWorkerTopicEnabled();
 
+        subscribedChainTaskIds = ConcurrentHashMap.newKeySet();
         chainTaskIdToSubscription = new ConcurrentHashMap<>();
+        lastTaskTopicNotifications = new ConcurrentHashMap<>();
+        duplicateNotificationWindow = DUPLICATE_NOTIFICATION_WINDOW;
+        revealedChainTaskIds = ConcurrentHashMap.newKeySet();
+        finalDeadlineTimeouts = new ConcurrentHashMap<>();
+        reconnectBackoff = new ReconnectBackoff(RECONNECT_INITIAL_DELAY, RECONNECT_MAX_DELAY);
         url = "ws://" + coreHost + ":" + corePort + "/connect";
     }
 
     @PostConstruct
     private void run() {
-        this.restartStomp();
-    }
+        // the client and its scheduler are created once and reused by every reconnection
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setThreadNamePrefix("stomp-");
+        taskScheduler.initialize();
 
-    private void restartStomp() {
-        log.info("Starting STOMP");
         WebSocketClient webSocketClient = new StandardWebSocketClient();
         this.stompClient = new WebSocketStompClient(webSocketClient);
         this.stompClient.setMessageConverter(new MappingJackson2MessageConverter());
-        this.stompClient.setTaskScheduler(new ConcurrentTaskScheduler());
+        this.stompClient.setTaskScheduler(taskScheduler);
+        this.stompClient.setDefaultHeartbeat(new long[]{HEARTBEAT_PERIOD, HEARTBEAT_PERIOD});
+        this.startStomp();
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        StompSession.Subscription subscription = workerSubscription;
+        if (subscription != null && session != null && session.isConnected()) {
+            subscription.unsubscribe();
+        }
+        workerSubscription = null;
+        taskScheduler.shutdown();
+    }
+
+    private void startStomp() {
+        log.info("Starting STOMP [url:{}, attempt:{}]", url, reconnectBackoff.getAttempts());
         this.stompClient.connect(url, this);
-        log.info("Started STOMP");
+    }
+
+    private void scheduleReconnect() {
+        long delay = reconnectBackoff.nextDelay();
+        if (delay < 0) {
+            // already pending
+            return;
+        }
+        log.warn("STOMP disconnected, will reconnect [attempt:{}, delay:{}ms]", reconnectBackoff.getAttempts(), delay);
+        taskScheduler.schedule(() -> {
+            reconnectBackoff.onReconnect();
+            startStomp();
+        }, new Date(System.currentTimeMillis() + delay));
     }
 
     private void reSubscribeToTopics() {
-        List<String> chainTaskIds = new ArrayList<>(chainTaskIdToSubscription.keySet());
+        if (isWorkerTopicEnabled) {
+            subscribeToWorkerTopic();
+        }
+        chainTaskIdToSubscription.clear();
+        if (isWorkerTopicConfirmed) {
+            log.info("Subscribed to worker topic, no task topic to resubscribe [chainTaskIds: {}]", subscribedChainTaskIds);
+            return;
+        }
+
+        List<String> chainTaskIds = new ArrayList<>(subscribedChainTaskIds);
         log.info("ReSubscribing to topics [chainTaskIds: {}]", chainTaskIds.toString());
         for (String chainTaskId : chainTaskIds) {
-            chainTaskIdToSubscription.remove(chainTaskId);
-            subscribeToTopic(chainTaskId);
+            subscribeToTaskTopic(chainTaskId);
         }
         log.info("ReSubscribed to topics [chainTaskIds: {}]", chainTaskIds.toString());
     }
@@ -105,7 +202,104 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
     public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
         log.info("SubscriptionService set up [session: {}, isConnected: {}]", session.getSessionId(), session.isConnected());
         this.session = session;
+        this.reconnectBackoff.reset();
         this.reSubscribeToTopics();
+
+        if (hasBeenConnected) {
+            reconcileTasks();
+        }
+        hasBeenConnected = true;
+    }
+
+    /*
+     * Notifications sent while the worker was disconnected are lost, so the state of each in-flight
+     * task is read from the chain and the matching action is replayed.
+     * */
+    private void reconcileTasks() {
+        List<String> chainTaskIds = new ArrayList<>(subscribedChainTaskIds);
+        log.info("Reconciling tasks with the chain [chainTaskIds:{}]", chainTaskIds);
+        for (String chainTaskId : chainTaskIds) {
+            taskNotificationExecutor.execute(chainTaskId, () -> reconcileTask(chainTaskId));
+        }
+    }
+
+    /*
+     * After a restart of the core (new session), with the tasks the core has in progress for this worker.
+     * A replicate running here which the core doesn't list anymore is aborted: the core won't ask for its
+     * reveal nor its result. The others get their last status sent again, in case the core missed it, then
+     * are reconciled with the chain. The tasks the core lists but which are not running here can't be
+     * resumed (no result), they are only reported.
+     * */
+    public void reconcileWithCore(List<String> chainTaskIdsInProgress) {
+        for (String chainTaskId : new ArrayList<>(subscribedChainTaskIds)) {
+            if (!chainTaskIdsInProgress.contains(chainTaskId)) {
+                log.warn("Task not in progress for the core anymore, aborting replicate [chainTaskId:{}]",
+                        chainTaskId);
+                taskNotificationExecutor.execute(chainTaskId, () -> cleanReplicate(chainTaskId));
+                continue;
+            }
+            feignClient.resendLastReplicateStatus(chainTaskId);
+            taskNotificationExecutor.execute(chainTaskId, () -> reconcileTask(chainTaskId));
+        }
+        List<String> unknownToWorker = new ArrayList<>(chainTaskIdsInProgress);
+        unknownToWorker.removeAll(subscribedChainTaskIds);
+        if (!unknownToWorker.isEmpty()) {
+            log.warn("Tasks in progress for the core but not on this worker [chainTaskIds:{}]", unknownToWorker);
+        }
+    }
+
+    @Override
+    public void onChainTaskEvent(ChainTaskEvent event) {
+        String chainTaskId = event.getChainTaskId();
+        if (!subscribedChainTaskIds.contains(chainTaskId)) {
+            return;
+        }
+        log.info("Received chain event [chainTaskId:{}, type:{}, blockNumber:{}]",
+                chainTaskId, event.getType(), event.getBlockNumber());
+
+        if (event.getType().equals(ChainTaskEventType.REVEAL)) {
+            if (workerWalletAddress.equalsIgnoreCase(event.getWorkerAddress())) {
+                revealedChainTaskIds.add(chainTaskId);
+            }
+            return;
+        }
+        // consensus and finalization: same actions as when a notification has been missed
+        taskNotificationExecutor.execute(chainTaskId, () -> reconcileTask(chainTaskId));
+    }
+
+    private void reconcileTask(String chainTaskId) {
+        Optional<ChainTask> optionalChainTask = iexecHubService.getChainTask(chainTaskId);
+        if (!optionalChainTask.isPresent()) {
+            return;
+        }
+        ChainTask chainTask = optionalChainTask.get();
+        ChainTaskStatus status = chainTask.getStatus();
+
+        if (status.equals(ChainTaskStatus.REVEALING) && revealService.canReveal(chainTaskId)) {
+            log.info("Missed reveal notification, revealing now [chainTaskId:{}]", chainTaskId);
+            reveal(chainTaskId);
+        } else if (status.equals(ChainTaskStatus.REVEALING) && !isPartOfConsensus(chainTaskId, chainTask)) {
+            log.info("Missed abort notification, consensus reached without this worker [chainTaskId:{}]", chainTaskId);
+            abortConsensusReached(chainTaskId);
+        } else if (status.equals(ChainTaskStatus.ACTIVE)
+                && chainTask.getContributionDeadline() < chainHeadTracker.getChainTime()) {
+            log.info("Missed abort notification, contribution deadline reached [chainTaskId:{}]", chainTaskId);
+            abortContributionTimeout(chainTaskId);
+        } else if (status.equals(ChainTaskStatus.COMPLETED)) {
+            log.info("Missed completion notification, completing now [chainTaskId:{}]", chainTaskId);
+            completeTask(chainTaskId);
+        }
+    }
+
+    // a contribution which can't be read is assumed to be part of it, the final deadline drops the task anyway
+    private boolean isPartOfConsensus(String chainTaskId, ChainTask chainTask) {
+        Optional<ChainContribution> optionalContribution = iexecHubService.getChainContribution(chainTaskId);
+        if (!optionalContribution.isPresent()) {
+            return true;
+        }
+        ChainContribution chainContribution = optionalContribution.get();
+        return !chainContribution.getStatus().equals(ChainContributionStatus.UNSET)
+                && chainContribution.getResultHash().equals(chainTask.getConsensusValue());
     }
 
     @Override
@@ -116,23 +310,27 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
             messageType = command.getMessageType();
         }
         log.error("Received handleException [session: {}, isConnected: {}, command: {}, exception: {}]",
-                session.getSessionId(), session.isConnected(), messageType, exception.getMessage());
-        exception.printStackTrace();
-        this.restartStomp();
+                session.getSessionId(), session.isConnected(), messageType, exception.getMessage(), exception);
+        if (!session.isConnected()) {
+            this.scheduleReconnect();
+        }
     }
 
     @Override
     public void handleTransportError(StompSession session, Throwable exception) {
         log.info("Received handleTransportError [session: {}, isConnected: {}, exception: {}]",
                 session.getSessionId(), session.isConnected(), exception.getMessage());
-        exception.printStackTrace();
-        this.restartStomp();
+        if (!session.isConnected()) {
+            this.scheduleReconnect();
+        }
     }
 
     private void unsubscribeFromTopic(String chainTaskId) {
-        if (chainTaskIdToSubscription.containsKey(chainTaskId)) {
-            chainTaskIdToSubscription.get(chainTaskId).unsubscribe();
-            chainTaskIdToSubscription.remove(chainTaskId);
+        subscribedChainTaskIds.remove(chainTaskId);
+        lastTaskTopicNotifications.remove(chainTaskId);
+        StompSession.Subscription subscription = chainTaskIdToSubscription.remove(chainTaskId);
+        if (subscription != null) {
+            subscription.unsubscribe();
             log.info("Unsubscribed from topic [chainTaskId:{}]", chainTaskId);
         } else {
             log.info("Already unsubscribed from topic [chainTaskId:{}]", chainTaskId);
@@ -140,6 +338,36 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
     }
 
     public void subscribeToTopic(String chainTaskId) {
+        subscribedChainTaskIds.add(chainTaskId);
+        scheduleFinalDeadline(chainTaskId);
+        if (isWorkerTopicConfirmed) {
+            log.info("Notifications received on worker topic [chainTaskId:{}, topic:{}]", chainTaskId, getWorkerTopicName());
+            return;
+        }
+        subscribeToTaskTopic(chainTaskId);
+    }
+
+    private void scheduleFinalDeadline(String chainTaskId) {
+        iexecHubService.getChainTask(chainTaskId).ifPresent(chainTask -> {
+            long deadline = chainHeadTracker.toLocalTime(chainTask.getFinalDeadline());
+            DeadlineTimer.Timeout timeout = deadlineTimer.schedule(deadline,
+                    () -> taskNotificationExecutor.execute(chainTaskId, () -> expireTask(chainTaskId)));
+            DeadlineTimer.Timeout previous = finalDeadlineTimeouts.put(chainTaskId, timeout);
+            if (previous != null) {
+                previous.cancel();
+            }
+        });
+    }
+
+    private void expireTask(String chainTaskId) {
+        if (!subscribedChainTaskIds.contains(chainTaskId)) {
+            return;
+        }
+        log.warn("Final deadline reached, the task is dropped [chainTaskId:{}]", chainTaskId);
+        cleanReplicate(chainTaskId);
+    }
+
+    private void subscribeToTaskTopic(String chainTaskId) {
         if (!chainTaskIdToSubscription.containsKey(chainTaskId)) {
             StompSession.Subscription subscription = session.subscribe(getTaskTopicName(chainTaskId), new StompFrameHandler() {
                 @Override
@@ -151,7 +379,7 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
                 public void handleFrame(StompHeaders headers, @Nullable Object payload) {
                     if (payload != null) {
                         TaskNotification taskNotification = (TaskNotification) payload;
-                        handleTaskNotification(taskNotification);
+                        handleTaskTopicNotification(taskNotification);
                     } else {
                         log.info("Payload of TaskNotification is null [chainTaskId:{}]", chainTaskId);
                     }
@@ -164,6 +392,78 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
         }
     }
 
+    // one subscription for all the tasks of the worker, notifications are dispatched locally
+    private void subscribeToWorkerTopic() {
+        workerSubscription = session.subscribe(getWorkerTopicName(), new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return TaskNotification.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, @Nullable Object payload) {
+                if (payload != null) {
+                    handleWorkerTopicNotification((TaskNotification) payload);
+                } else {
+                    log.info("Payload of TaskNotification is null [topic:{}]", getWorkerTopicName());
+                }
+            }
+        });
+        log.info("Subscribed to worker topic [topic:{}]", getWorkerTopicName());
+    }
+
+    private void handleTaskTopicNotification(TaskNotification notif) {
+        if (isWorkerTopicConfirmed) {
+            // already received (or to be received) on the worker topic
+            return;
+        }
+        lastTaskTopicNotifications.put(notif.getChainTaskId(),
+                new TaskTopicNotification(notif.getTaskNotificationType(), System.currentTimeMillis()));
+        handleTaskNotification(notif);
+    }
+
+    private void handleWorkerTopicNotification(TaskNotification notif) {
+        String chainTaskId = notif.getChainTaskId();
+        if (!isWorkerTopicConfirmed) {
+            confirmWorkerTopic();
+        }
+        if (!subscribedChainTaskIds.contains(chainTaskId)) {
+            log.debug("Notification for an unknown task ignored [chainTaskId:{}]", chainTaskId);
+            return;
+        }
+        /*
+         * The same notification may have just been received on the task topic before the switch.
+         * Notifications carry no id, so a notification of the same type received on the task topic shortly
+         * before is taken as the same one; a real repeat comes later (e.g. retried by the core) and is kept.
+         * */
+        TaskTopicNotification previous = lastTaskTopicNotifications.remove(chainTaskId);
+        if (previous != null && previous.type.equals(notif.getTaskNotificationType())
+                && System.currentTimeMillis() - previous.receivedAt < duplicateNotificationWindow) {
+            return;
+        }
+        handleTaskNotification(notif);
+    }
+
+    // ms, shortened by the tests
+    void setDuplicateNotificationWindow(long duplicateNotificationWindow) {
+        this.duplicateNotificationWindow = duplicateNotificationWindow;
+    }
+
+    private synchronized void confirmWorkerTopic() {
+        if (isWorkerTopicConfirmed) {
+            return;
+        }
+        isWorkerTopicConfirmed = true;
+        log.info("Core publishes on worker topic, dropping task topics [topic:{}, chainTaskIds:{}]",
+                getWorkerTopicName(), chainTaskIdToSubscription.keySet());
+        for (String chainTaskId : new ArrayList<>(chainTaskIdToSubscription.keySet())) {
+            StompSession.Subscription subscription = chainTaskIdToSubscription.remove(chainTaskId);
+            if (subscription != null) {
+                subscription.unsubscribe();
+            }
+        }
+    }
+
     private void handleTaskNotification(TaskNotification notif) {
         if (notif.getWorkersAddress().contains(workerWalletAddress)
                 || notif.getWorkersAddress().isEmpty()) {
@@ -172,52 +472,66 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
             TaskNotificationType type = notif.getTaskNotificationType();
             String chainTaskId = notif.getChainTaskId();
 
-            switch (type) {
-                case PLEASE_ABORT_CONTRIBUTION_TIMEOUT:
-                    abortContributionTimeout(chainTaskId);
-                    break;
+            // the frame handler thread is released right away, the notification is handled in the task lane
+            taskNotificationExecutor.execute(chainTaskId, type, () -> processTaskNotification(chainTaskId, type));
+        }
+    }
+
+    private void processTaskNotification(String chainTaskId, TaskNotificationType type) {
+        switch (type) {
+            case PLEASE_ABORT_CONTRIBUTION_TIMEOUT:
+                abortContributionTimeout(chainTaskId);
+                break;
 
-                case PLEASE_ABORT_CONSENSUS_REACHED:
-                    abortConsensusReached(chainTaskId);
-                    break;
+            case PLEASE_ABORT_CONSENSUS_REACHED:
+                abortConsensusReached(chainTaskId);
+                break;
 
-                case PLEASE_REVEAL:
-                    reveal(chainTaskId);
-                    break;
+            case PLEASE_REVEAL:
+                reveal(chainTaskId);
+                break;
 
-                case PLEASE_UPLOAD:
-                    uploadResult(chainTaskId);
-                    break;
+            case PLEASE_UPLOAD:
+                uploadResult(chainTaskId);
+                break;
 
-                case COMPLETED:
-                    completeTask(chainTaskId);
-                    break;
+            case COMPLETED:
+                completeTask(chainTaskId);
+                break;
 
-                default:
-                    break;
-            }
+            default:
+                break;
         }
     }
 
     private void reveal(String chainTaskId) {
         log.info("Trying to reveal [chainTaskId:{}]", chainTaskId);
+        if (revealedChainTaskIds.contains(chainTaskId)) {
+            log.info("Already revealed [chainTaskId:{}]", chainTaskId);
+            return;
+        }
+
         if (!revealService.canReveal(chainTaskId)) {
             log.warn("The worker will not be able to reveal [chainTaskId:{}]", chainTaskId);
             feignClient.updateReplicateStatus(chainTaskId, CANT_REVEAL);
+            return;
         }
 
         if (!revealService.hasEnoughGas()) {
             feignClient.updateReplicateStatus(chainTaskId, OUT_OF_GAS);
-            System.exit(0);
+            return;
         }
 
         feignClient.updateReplicateStatus(chainTaskId, REVEALING);
         Optional<ChainReceipt> optionalChainReceipt = revealService.reveal(chainTaskId);
         if (!optionalChainReceipt.isPresent()) {
-            feignClient.updateReplicateStatus(chainTaskId, REVEAL_FAILED);
+            // e.g. not sent since it would revert (reveal deadline reached, consensus moved)
+            feignClient.updateReplicateStatus(chainTaskId,
+                    revealService.canReveal(chainTaskId) ? REVEAL_FAILED : CANT_REVEAL);
             return;
         }
 
+        revealedChainTaskIds.add(chainTaskId);
         feignClient.updateReplicateStatus(chainTaskId, REVEALED, optionalChainReceipt.get());
     }
 
@@ -245,12 +559,34 @@ public class SubscriptionService extends StompSessionHandlerAdapter {
     }
 
     private void cleanReplicate(String chainTaskId) {
-        // unsubscribe from the topic and remove the associated result from the machine
+        // a replicate still computing is useless, its result folder is removed once it has stopped writing to it
+        taskExecutorService.abortReplicate(chainTaskId)
+                .whenComplete((result, throwable) -> resultService.removeResult(chainTaskId));
+        // unsubscribe from the topic
         unsubscribeFromTopic(chainTaskId);
-        resultService.removeResult(chainTaskId);
+        revealedChainTaskIds.remove(chainTaskId);
+        DeadlineTimer.Timeout finalDeadlineTimeout = finalDeadlineTimeouts.remove(chainTaskId);
+        if (finalDeadlineTimeout != null) {
+            finalDeadlineTimeout.cancel();
+        }
+        gasBalanceService.releaseReservation(chainTaskId);
     }
 
     private String getTaskTopicName(String chainTaskId) {
         return "/topic/task/" + chainTaskId;
     }
-}
\ No newline at end of file
+
+    private String getWorkerTopicName() {
+        return "/topic/worker/" + workerWalletAddress;
+    }
+
+    private static class TaskTopicNotification {
+        private final TaskNotificationType type;
+        private final long receivedAt;
+
+        TaskTopicNotification(TaskNotificationType type, long receivedAt) {
+            this.type = type;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
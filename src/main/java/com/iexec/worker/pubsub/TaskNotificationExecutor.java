@@ -0,0 +1,184 @@
+package com.iexec.worker.pubsub;
+
+import com.iexec.common.result.TaskNotificationType;
+import com.iexec.worker.config.WorkerConfigurationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Runs the handling of task notifications outside of the STOMP frame handler thread.
+ * Notifications of a same chainTaskId are handled one after the other in their order of arrival (in a
+ * lane), lanes of different tasks run concurrently on a bounded pool. Priorities only choose the next lane
+ * to run: a lane waiting with an abort or a completion goes before one with a reveal, and a reveal before
+ * an upload.
+ * */
+@Slf4j
+@Service
+public class TaskNotificationExecutor {
+
+    private static final int HIGH_PRIORITY = 0;
+    private static final int NORMAL_PRIORITY = 1;
+    private static final int LOW_PRIORITY = 2;
+
+    private final Map<String, Lane> lanes;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence;
+
+    public TaskNotificationExecutor(WorkerConfigurationService workerConfigurationService) {
+        int poolSize = workerConfigurationService.getNotificationPoolSize();
+        this.lanes = new HashMap<>();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+        this.sequence = new AtomicLong();
+    }
+
+    static int getPriority(TaskNotificationType type) {
+        switch (type) {
+            case PLEASE_ABORT_CONTRIBUTION_TIMEOUT:
+            case PLEASE_ABORT_CONSENSUS_REACHED:
+            case COMPLETED:
+                return HIGH_PRIORITY;
+            case PLEASE_UPLOAD:
+                return LOW_PRIORITY;
+            default:
+                return NORMAL_PRIORITY;
+        }
+    }
+
+    public void execute(String chainTaskId, TaskNotificationType type, Runnable action) {
+        execute(chainTaskId, getPriority(type), action);
+    }
+
+    // for actions which are not triggered by a notification
+    public void execute(String chainTaskId, Runnable action) {
+        execute(chainTaskId, NORMAL_PRIORITY, action);
+    }
+
+    private void execute(String chainTaskId, int priority, Runnable action) {
+        PendingAction pendingAction = new PendingAction(priority, sequence.getAndIncrement(), action);
+
+        synchronized (lanes) {
+            Lane lane = lanes.computeIfAbsent(chainTaskId, Lane::new);
+            lane.pendingActions.add(pendingAction);
+
+            if (lane.queuedRunner == null && !lane.isRunning) {
+                schedule(lane, pendingAction);
+            } else if (lane.queuedRunner != null && pendingAction.compareTo(lane.queuedRunner.key) < 0
+                    && executor.remove(lane.queuedRunner)) {
+                // the lane is waiting for a thread: move it up the queue, its actions keep their order
+                schedule(lane, pendingAction);
+            }
+        }
+    }
+
+    public int getBacklogSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        executor.shutdownNow();
+    }
+
+    // must be called while holding the lanes lock, key is the most urgent pending action of the lane
+    private void schedule(Lane lane, PendingAction key) {
+        lane.queuedRunner = new LaneRunner(lane, key);
+        executor.execute(lane.queuedRunner);
+    }
+
+    private void runLane(LaneRunner runner) {
+        Lane lane = runner.lane;
+        synchronized (lanes) {
+            if (lane.queuedRunner != runner) {
+                // this runner has been replaced by a higher priority one
+                return;
+            }
+            lane.queuedRunner = null;
+            lane.isRunning = true;
+        }
+
+        while (true) {
+            PendingAction pendingAction;
+            synchronized (lanes) {
+                pendingAction = lane.pendingActions.poll();
+                if (pendingAction == null) {
+                    lane.isRunning = false;
+                    lanes.remove(lane.chainTaskId);
+                    return;
+                }
+            }
+            try {
+                pendingAction.action.run();
+            } catch (Exception e) {
+                log.error("Failed to handle notification [chainTaskId:{}, exception:{}]",
+                        lane.chainTaskId, e.getMessage());
+            }
+        }
+    }
+
+    private static class Lane {
+        private final String chainTaskId;
+        private final Queue<PendingAction> pendingActions;
+        private LaneRunner queuedRunner;
+        private boolean isRunning;
+
+        Lane(String chainTaskId) {
+            this.chainTaskId = chainTaskId;
+            this.pendingActions = new ArrayDeque<>();
+        }
+    }
+
+    private static class PendingAction implements Comparable<PendingAction> {
+        private final int priority;
+        private final long sequence;
+        private final Runnable action;
+
+        PendingAction(int priority, long sequence, Runnable action) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(PendingAction other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private class LaneRunner implements Runnable, Comparable<LaneRunner> {
+        private final Lane lane;
+        private final PendingAction key;
+
+        LaneRunner(Lane lane, PendingAction key) {
+            this.lane = lane;
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            runLane(this);
+        }
+
+        @Override
+        public int compareTo(LaneRunner other) {
+            return key.compareTo(other.key);
+        }
+    }
+}
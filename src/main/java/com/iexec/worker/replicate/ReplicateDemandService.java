@@ -3,6 +3,7 @@ package com.iexec.worker.replicate;
 import com.iexec.common.chain.ChainDeal;
 import com.iexec.common.chain.ChainTask;
 import com.iexec.common.chain.ContributionAuthorization;
+import com.iexec.common.config.PublicConfiguration;
 import com.iexec.common.dapp.DappType;
 import com.iexec.common.replicate.AvailableReplicateModel;
 import com.iexec.common.tee.TeeUtils;
@@ -13,11 +14,14 @@ import com.iexec.worker.config.WorkerConfigurationService;
 import com.iexec.worker.executor.TaskExecutorService;
 import com.iexec.worker.feign.CustomFeignClient;
 import com.iexec.worker.pubsub.SubscriptionService;
+import com.iexec.worker.utils.PeriodicJob;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Optional;
 
 
@@ -33,6 +37,8 @@ public class ReplicateDemandService {
 
     private String corePublicAddress;
     private IexecHubService iexecHubService;
+    // own thread: the chain reads of a demand don't delay the other periodic jobs (e.g. the pings)
+    private PeriodicJob askForReplicateJob;
 
     @Autowired
     public ReplicateDemandService(WorkerConfigurationService workerConfigService,
@@ -40,7 +46,8 @@ public class ReplicateDemandService {
                                   SubscriptionService subscriptionService,
                                   ContributionService contributionService,
                                   IexecHubService iexecHubService,
-                                  CustomFeignClient feignClient) {
+                                  CustomFeignClient feignClient,
+                                  MeterRegistry meterRegistry) {
         this.feignClient = feignClient;
         this.workerConfigService = workerConfigService;
         this.executorService = executorService;
@@ -48,11 +55,29 @@ public class ReplicateDemandService {
         this.contributionService = contributionService;
         this.iexecHubService = iexecHubService;
 
-        corePublicAddress = feignClient.getPublicConfiguration().getSchedulerPublicAddress();
+        PublicConfiguration publicConfiguration = feignClient.getPublicConfiguration();
+        corePublicAddress = publicConfiguration.getSchedulerPublicAddress();
+        askForReplicateJob = new PeriodicJob("askForReplicate", publicConfiguration.getAskForReplicatePeriod(),
+                this::askForReplicate, meterRegistry);
+    }
+
+    @PostConstruct
+    void run() {
+        askForReplicateJob.start();
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        askForReplicateJob.stop();
     }
 
-    @Scheduled(fixedRateString =  "#{publicConfigurationService.askForReplicatePeriod}")
     public String askForReplicate() {
+        // new work is declined when gas is low so that in-flight reveals can still be paid
+        if (!iexecHubService.hasEnoughGas()) {
+            log.warn("Not enough gas to contribute, the worker won't accept more tasks");
+            return "Not enough gas";
+        }
+
         // choose if the worker can run a task or not
         if (executorService.canAcceptMoreReplicate()) {
             ContributionAuthorization contribAuth = feignClient.getAvailableReplicate();
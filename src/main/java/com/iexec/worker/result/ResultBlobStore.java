@@ -0,0 +1,204 @@
+package com.iexec.worker.result;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Content-addressed store for result files.
+ * Each file of a result folder is hashed (SHA-256) and kept once under <resultBaseDir>/.blobs/<hh>/<hash>,
+ * the task folder only holds hard links to those blobs. The list of blobs used by a task is written in
+ * <resultBaseDir>/.manifests/<chainTaskId>. The reference count of a blob is its hard link count, so a blob
+ * is freed when the last task folder pointing to it has been removed.
+ * */
+@Slf4j
+@Service
+public class ResultBlobStore {
+
+    static final String BLOBS_FOLDER_NAME = ".blobs";
+    static final String MANIFESTS_FOLDER_NAME = ".manifests";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private WorkerConfigurationService configurationService;
+
+    public ResultBlobStore(WorkerConfigurationService configurationService) {
+        this.configurationService = configurationService;
+    }
+
+    /*
+     * Replaces every file of the folder (and the sibling zip if present) by a hard link to its blob.
+     * Files that can't be linked (unsupported file system, I/O error) are left untouched.
+     * */
+    public void storeResult(String chainTaskId, String resultFolderPath, String resultZipFilePath) {
+        List<Path> files = new ArrayList<>();
+        Path folder = Paths.get(resultFolderPath);
+        if (folder.toFile().isDirectory()) {
+            try (Stream<Path> stream = Files.walk(folder)) {
+                files.addAll(stream.filter(Files::isRegularFile).collect(Collectors.toList()));
+            } catch (IOException e) {
+                log.error("Failed to list result files [chainTaskId:{}, path:{}]", chainTaskId, resultFolderPath);
+                return;
+            }
+        }
+        Path zip = Paths.get(resultZipFilePath);
+        if (Files.isRegularFile(zip)) {
+            files.add(zip);
+        }
+
+        List<String> hashes = new ArrayList<>();
+        int nbDeduplicated = 0;
+        for (Path file : files) {
+            try {
+                String hash = sha256(file);
+                if (linkToBlob(file, hash)) {
+                    nbDeduplicated++;
+                }
+                hashes.add(hash);
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("Failed to store result file in blob store [chainTaskId:{}, file:{}, exception:{}]",
+                        chainTaskId, file, e.getMessage());
+            }
+        }
+
+        writeManifest(chainTaskId, hashes);
+        log.info("Result stored in blob store [chainTaskId:{}, nbFiles:{}, nbDeduplicated:{}]",
+                chainTaskId, files.size(), nbDeduplicated);
+    }
+
+    /*
+     * Must be called once the task folder and zip have been deleted: blobs of the manifest which are not
+     * referenced anymore by any other task are freed.
+     * */
+    public void releaseResult(String chainTaskId) {
+        Path manifest = getManifestPath(chainTaskId);
+        for (String hash : readManifest(chainTaskId)) {
+            releaseBlob(hash);
+        }
+        try {
+            Files.deleteIfExists(manifest);
+        } catch (IOException e) {
+            log.error("Failed to delete manifest [chainTaskId:{}, path:{}]", chainTaskId, manifest);
+        }
+    }
+
+    /*
+     * Frees every blob which is not referenced by any task anymore (e.g. after a crash).
+     * */
+    public void pruneBlobs() {
+        Path blobsFolder = getBlobsFolderPath();
+        if (!blobsFolder.toFile().isDirectory()) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(blobsFolder)) {
+            stream.filter(Files::isRegularFile)
+                    .forEach(blob -> releaseBlob(blob.getFileName().toString()));
+        } catch (IOException e) {
+            log.error("Failed to prune blob store [path:{}]", blobsFolder);
+        }
+    }
+
+    List<String> readManifest(String chainTaskId) {
+        Path manifest = getManifestPath(chainTaskId);
+        if (!Files.isRegularFile(manifest)) {
+            return Collections.emptyList();
+        }
+        try {
+            return Files.readAllLines(manifest, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.isEmpty())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Failed to read manifest [chainTaskId:{}, path:{}]", chainTaskId, manifest);
+        }
+        return Collections.emptyList();
+    }
+
+    Path getBlobPath(String hash) {
+        return getBlobsFolderPath().resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private boolean linkToBlob(Path file, String hash) throws IOException {
+        Path blob = getBlobPath(hash);
+        Files.createDirectories(blob.getParent());
+        boolean isDuplicate = true;
+        try {
+            // first occurrence of this content: the file itself becomes the blob
+            Files.createLink(blob, file);
+            isDuplicate = false;
+        } catch (FileAlreadyExistsException e) {
+            Path tmp = file.resolveSibling(file.getFileName() + ".link");
+            Files.createLink(tmp, blob);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return isDuplicate;
+    }
+
+    private void releaseBlob(String hash) {
+        Path blob = getBlobPath(hash);
+        try {
+            // the blob itself is one link, so 1 means no task references it anymore
+            if (Files.exists(blob) && (int) Files.getAttribute(blob, "unix:nlink") <= 1) {
+                Files.delete(blob);
+                log.debug("Blob freed [hash:{}]", hash);
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            log.error("Failed to release blob [hash:{}, exception:{}]", hash, e.getMessage());
+        }
+    }
+
+    private void writeManifest(String chainTaskId, List<String> hashes) {
+        Path manifest = getManifestPath(chainTaskId);
+        try {
+            Files.createDirectories(manifest.getParent());
+            Files.write(manifest, hashes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to write manifest [chainTaskId:{}, path:{}]", chainTaskId, manifest);
+        }
+    }
+
+    private Path getBlobsFolderPath() {
+        return Paths.get(configurationService.getResultBaseDir(), BLOBS_FOLDER_NAME);
+    }
+
+    private Path getManifestPath(String chainTaskId) {
+        return Paths.get(configurationService.getResultBaseDir(), MANIFESTS_FOLDER_NAME, chainTaskId);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            while (in.read(buffer) != -1) {
+                // digest is updated while reading
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    static boolean isStoreFolder(File file) {
+        return file.getName().equals(BLOBS_FOLDER_NAME) || file.getName().equals(MANIFESTS_FOLDER_NAME)
+                || file.getName().equals(ResultCleanupService.TRASH_FOLDER_NAME);
+    }
+}
@@ -0,0 +1,171 @@
+package com.iexec.worker.result;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.utils.FileHelper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Results are not deleted by the caller: they are renamed into <resultBaseDir>/.trash/<chainTaskId>
+ * (constant time, same file system) and reclaimed in the background in bounded batches.
+ * When the disk usage goes above the high-water mark, the whole backlog is reclaimed at once.
+ * An entry which can't be deleted goes back to the backlog and is tried again with the next batch.
+ * The size of the backlog is published as iexec.result.trash.backlog.
+ * */
+@Slf4j
+@Service
+public class ResultCleanupService {
+
+    static final String TRASH_FOLDER_NAME = ".trash";
+    private static final long RECLAIM_PERIOD = 1000;
+
+    private WorkerConfigurationService configurationService;
+    private ResultBlobStore resultBlobStore;
+    private BlockingQueue<TrashEntry> backlog;
+    private ScheduledExecutorService executor;
+
+    public ResultCleanupService(WorkerConfigurationService configurationService,
+                                ResultBlobStore resultBlobStore,
+                                MeterRegistry meterRegistry) {
+        this.configurationService = configurationService;
+        this.resultBlobStore = resultBlobStore;
+        this.backlog = new LinkedBlockingQueue<>();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        meterRegistry.gauge("iexec.result.trash.backlog", backlog, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    void run() {
+        recoverTrash();
+        executor.scheduleWithFixedDelay(this::reclaim, RECLAIM_PERIOD, RECLAIM_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void onPreDestroy() {
+        executor.shutdown();
+    }
+
+    /*
+     * Moves the result folder and zip of the task to the trash, returns false if nothing could be moved.
+     * */
+    public boolean moveToTrash(String chainTaskId, String resultFolderPath, String resultZipFilePath) {
+        Path trashEntryPath = getTrashFolderPath().resolve(chainTaskId + "-" + System.nanoTime());
+        boolean movedFolder = move(Paths.get(resultFolderPath), trashEntryPath.resolve(chainTaskId));
+        boolean movedZip = move(Paths.get(resultZipFilePath), trashEntryPath.resolve(chainTaskId + ".zip"));
+
+        if (movedFolder || movedZip) {
+            backlog.add(new TrashEntry(chainTaskId, trashEntryPath));
+            log.debug("Result moved to trash [chainTaskId:{}, path:{}]", chainTaskId, trashEntryPath);
+        } else {
+            // the blobs may still have to be released if the result had already been removed
+            resultBlobStore.releaseResult(chainTaskId);
+        }
+        return movedFolder && movedZip;
+    }
+
+    public int getBacklogSize() {
+        return backlog.size();
+    }
+
+    public boolean isAboveHighWaterMark() {
+        File resultBaseDir = new File(configurationService.getResultBaseDir());
+        long totalSpace = resultBaseDir.getTotalSpace();
+        if (totalSpace == 0) {
+            return false;
+        }
+        long usedPercent = 100 * (totalSpace - resultBaseDir.getUsableSpace()) / totalSpace;
+        return usedPercent >= configurationService.getResultDiskHighWaterMark();
+    }
+
+    void reclaim() {
+        try {
+            int batchSize = configurationService.getResultCleanupBatchSize();
+            if (!backlog.isEmpty() && isAboveHighWaterMark()) {
+                log.warn("Disk usage above high-water mark, reclaiming the whole trash [backlog:{}, highWaterMark:{}%]",
+                        backlog.size(), configurationService.getResultDiskHighWaterMark());
+                batchSize = Integer.MAX_VALUE;
+            }
+
+            int nbReclaimed = 0;
+            List<TrashEntry> failedEntries = new ArrayList<>();
+            TrashEntry entry;
+            while (nbReclaimed + failedEntries.size() < batchSize && (entry = backlog.poll()) != null) {
+                if (!FileHelper.deleteFolder(entry.getPath().toString()) && Files.exists(entry.getPath())) {
+                    failedEntries.add(entry);
+                    continue;
+                }
+                resultBlobStore.releaseResult(entry.getChainTaskId());
+                nbReclaimed++;
+            }
+            // tried again with the next batch, after the entries already waiting
+            backlog.addAll(failedEntries);
+
+            if (nbReclaimed > 0 || !failedEntries.isEmpty()) {
+                log.info("Reclaimed results from trash [nbReclaimed:{}, nbFailed:{}, backlog:{}]",
+                        nbReclaimed, failedEntries.size(), backlog.size());
+            }
+        } catch (Exception e) {
+            // an exception would cancel the periodic task
+            log.error("Failed to reclaim results from trash [exception:{}]", e.getMessage());
+        }
+    }
+
+    // entries left in the trash by a previous run are reclaimed as well
+    void recoverTrash() {
+        File[] leftovers = getTrashFolderPath().toFile().listFiles(File::isDirectory);
+        if (leftovers == null) {
+            return;
+        }
+        for (File leftover : leftovers) {
+            String name = leftover.getName();
+            int separatorIndex = name.lastIndexOf('-');
+            String chainTaskId = separatorIndex > 0 ? name.substring(0, separatorIndex) : name;
+            backlog.add(new TrashEntry(chainTaskId, leftover.toPath()));
+        }
+        log.info("Recovered results left in trash [backlog:{}]", backlog.size());
+    }
+
+    private boolean move(Path source, Path target) {
+        if (!Files.exists(source)) {
+            return false;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to move to trash [source:{}, target:{}]", source, target);
+        }
+        return false;
+    }
+
+    private Path getTrashFolderPath() {
+        return Paths.get(configurationService.getResultBaseDir(), TRASH_FOLDER_NAME);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class TrashEntry {
+        private String chainTaskId;
+        private Path path;
+    }
+}
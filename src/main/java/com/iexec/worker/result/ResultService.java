@@ -2,7 +2,6 @@ package com.iexec.worker.result;
 
 import com.iexec.common.result.ResultModel;
 import com.iexec.worker.config.WorkerConfigurationService;
-import com.iexec.worker.utils.FileHelper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -22,9 +21,15 @@ public class ResultService {
 
     private Map<String, ResultInfo> resultInfoMap;
     private WorkerConfigurationService configurationService;
+    private ResultBlobStore resultBlobStore;
+    private ResultCleanupService resultCleanupService;
 
-    public ResultService(WorkerConfigurationService configurationService) {
+    public ResultService(WorkerConfigurationService configurationService,
+                         ResultBlobStore resultBlobStore,
+                         ResultCleanupService resultCleanupService) {
         this.configurationService = configurationService;
+        this.resultBlobStore = resultBlobStore;
+        this.resultCleanupService = resultCleanupService;
         this.resultInfoMap = new ConcurrentHashMap<>();
     }
 
@@ -55,21 +60,29 @@ public class ResultService {
         return resultInfoMap.get(chainTaskId);
     }
 
+    // deduplicate the result files of the task against the results already on the machine
+    public void storeResult(String chainTaskId) {
+        resultBlobStore.storeResult(chainTaskId, getResultFolderPath(chainTaskId), getResultZipFilePath(chainTaskId));
+    }
+
+    /*
+     * The result is moved to the trash and reclaimed in the background by the ResultCleanupService,
+     * so this call doesn't depend on the size of the result.
+     * */
     public boolean removeResult(String chainTaskId) {
         boolean deletedInMap = resultInfoMap.remove(chainTaskId) != null;
-        boolean deletedZipFile = FileHelper.deleteFile(getResultZipFilePath(chainTaskId));
-        boolean deletedResultFolder = FileHelper.deleteFolder(getResultFolderPath(chainTaskId));
+        boolean movedToTrash = resultCleanupService.moveToTrash(chainTaskId,
+                getResultFolderPath(chainTaskId), getResultZipFilePath(chainTaskId));
 
-        boolean ret = deletedZipFile && deletedResultFolder;
-        if (ret) {
+        if (movedToTrash) {
             log.info("The result of the chainTaskId has been deleted [chainTaskId:{}]", chainTaskId);
         } else {
             log.warn("The result of the chainTaskId couldn't be deleted [chainTaskId:{}, deletedInMap:{}, " +
-                            "deletedZipFile:{}, deletedResultFolder:{}]",
-                    chainTaskId, deletedInMap, deletedZipFile, deletedResultFolder);
+                            "movedToTrash:{}]",
+                    chainTaskId, deletedInMap, movedToTrash);
         }
 
-        return ret;
+        return movedToTrash;
     }
 
     public String getResultFolderPath(String chainTaskId){
@@ -82,11 +95,20 @@ public class ResultService {
 
     public List<String> getAllChainTaskIdsInResultFolder(){
         File resultsFolder = new File(configurationService.getResultBaseDir());
-        String[] chainTaskIdFolders = resultsFolder.list((current, name) -> new File(current, name).isDirectory());
+        String[] chainTaskIdFolders = resultsFolder.list((current, name) -> new File(current, name).isDirectory()
+                && !ResultBlobStore.isStoreFolder(new File(current, name)));
 
         if (chainTaskIdFolders == null || chainTaskIdFolders.length == 0) {
             return Collections.emptyList();
         }
         return Arrays.asList(chainTaskIdFolders);
     }
+
+    public int getCleanupBacklogSize() {
+        return resultCleanupService.getBacklogSize();
+    }
+
+    public void pruneResultBlobs() {
+        resultBlobStore.pruneBlobs();
+    }
 }
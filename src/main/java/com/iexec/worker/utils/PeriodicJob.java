@@ -0,0 +1,84 @@
+package com.iexec.worker.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs a job at a fixed rate on its own thread, so that a job blocked on a slow service (e.g. a chain node)
+ * never delays the other periodic jobs of the worker. Runs never overlap: a run longer than the period is
+ * an overrun, the runs it missed are skipped instead of being chained right after it.
+ * Lag (actual start - planned start) and duration of the runs are published as iexec.job.lag and
+ * iexec.job.duration, overruns as iexec.job.overruns (tag job).
+ * */
+@Slf4j
+public class PeriodicJob {
+
+    private final String name;
+    private final long period;
+    private final Runnable job;
+    private final ScheduledExecutorService executor;
+    private final Timer lagTimer;
+    private final Timer durationTimer;
+    private final Counter overrunCounter;
+    private long plannedStart;
+
+    public PeriodicJob(String name, long period, Runnable job, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.period = period;
+        this.job = job;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lagTimer = meterRegistry.timer("iexec.job.lag", "job", name);
+        this.durationTimer = meterRegistry.timer("iexec.job.duration", "job", name);
+        this.overrunCounter = meterRegistry.counter("iexec.job.overruns", "job", name);
+    }
+
+    public void start() {
+        plannedStart = System.currentTimeMillis();
+        executor.execute(this::runOnce);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // runs the job then schedules the next run, always on the job thread, whatever the job throws
+    void runOnce() {
+        long start = System.currentTimeMillis();
+        lagTimer.record(Math.max(0, start - plannedStart), TimeUnit.MILLISECONDS);
+        try {
+            job.run();
+        } catch (RuntimeException e) {
+            log.error("Periodic job failed [job:{}, exception:{}]", name, e.getMessage());
+        } finally {
+            long end = System.currentTimeMillis();
+            durationTimer.record(end - start, TimeUnit.MILLISECONDS);
+            scheduleNext(start, end);
+        }
+    }
+
+    private void scheduleNext(long start, long end) {
+        long missedRuns = (end - plannedStart) / period;
+        if (missedRuns > 0) {
+            overrunCounter.increment();
+            log.warn("Periodic job overran its period, skipping missed runs [job:{}, duration:{}, period:{}, " +
+                    "skipped:{}]", name, end - start, period, missedRuns);
+        }
+        plannedStart += (missedRuns + 1) * period;
+        try {
+            executor.schedule(this::runOnce, plannedStart - end, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+}
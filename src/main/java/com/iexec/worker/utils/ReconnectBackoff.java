@@ -0,0 +1,50 @@
+package com.iexec.worker.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Delays between the reconnections of a long-lived connection: exponential backoff with jitter (between half
+ * and all of the ceiling), so that the workers disconnected together don't reconnect together.
+ * Only one reconnection can be pending at a time, a lost connection may be reported several times.
+ * Safe to use from the callbacks of the connection and from the thread reconnecting.
+ * */
+public class ReconnectBackoff {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final AtomicInteger attempts;
+    private final AtomicBoolean isPending;
+
+    public ReconnectBackoff(long initialDelay, long maxDelay) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.attempts = new AtomicInteger();
+        this.isPending = new AtomicBoolean(false);
+    }
+
+    // delay (ms) of the next reconnection, -1 if one is already pending
+    public long nextDelay() {
+        if (!isPending.compareAndSet(false, true)) {
+            return -1;
+        }
+        int attempt = attempts.getAndIncrement();
+        long ceiling = Math.min(maxDelay, initialDelay << Math.min(attempt, 16));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    // the pending reconnection is starting, a new one can be scheduled if it fails
+    public void onReconnect() {
+        isPending.set(false);
+    }
+
+    // connected
+    public void reset() {
+        attempts.set(0);
+    }
+
+    public int getAttempts() {
+        return attempts.get();
+    }
+}
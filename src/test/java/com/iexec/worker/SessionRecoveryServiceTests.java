@@ -0,0 +1,98 @@
+package com.iexec.worker;
+
+import com.iexec.common.config.WorkerConfigurationModel;
+import com.iexec.worker.config.PublicConfigurationService;
+import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.feign.CoreTokenManager;
+import com.iexec.worker.feign.CustomFeignClient;
+import com.iexec.worker.pubsub.SubscriptionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SessionRecoveryServiceTests {
+
+    @Mock
+    private CustomFeignClient feignClient;
+
+    @Mock
+    private CoreTokenManager coreTokenManager;
+
+    @Mock
+    private PublicConfigurationService publicConfigurationService;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    @Mock
+    private RestartService restartService;
+
+    @InjectMocks
+    private SessionRecoveryService sessionRecoveryService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(workerConfigurationService.getWorkerConfigurationModel())
+                .thenReturn(WorkerConfigurationModel.builder().name("worker1").build());
+    }
+
+    @Test
+    public void shouldRecoverSessionInPlace() {
+        List<String> tasksInProgress = Collections.singletonList("0xtask");
+        when(publicConfigurationService.refresh()).thenReturn(true);
+        when(feignClient.registerWorker(any())).thenReturn(true);
+        when(feignClient.getTasksInProgress()).thenReturn(tasksInProgress);
+
+        assertThat(sessionRecoveryService.recoverSession()).isTrue();
+
+        verify(coreTokenManager).expireToken();
+        verify(subscriptionService).reconcileWithCore(tasksInProgress);
+        verify(restartService, never()).restartApp();
+    }
+
+    @Test
+    public void shouldRetryLaterIfRegistrationFails() {
+        when(publicConfigurationService.refresh()).thenReturn(true);
+        when(feignClient.registerWorker(any())).thenReturn(false);
+
+        assertThat(sessionRecoveryService.recoverSession()).isFalse();
+
+        verify(subscriptionService, never()).reconcileWithCore(any());
+        verify(restartService, never()).restartApp();
+    }
+
+    @Test
+    public void shouldRetryLaterIfTasksInProgressUnknown() {
+        when(publicConfigurationService.refresh()).thenReturn(true);
+        when(feignClient.registerWorker(any())).thenReturn(true);
+        when(feignClient.getTasksInProgress()).thenReturn(null);
+
+        assertThat(sessionRecoveryService.recoverSession()).isFalse();
+
+        // an unreachable core must not be taken for a core without task
+        verify(subscriptionService, never()).reconcileWithCore(any());
+    }
+
+    @Test
+    public void shouldRestartIfCoreConfigurationChanged() {
+        when(publicConfigurationService.refresh()).thenReturn(false);
+
+        assertThat(sessionRecoveryService.recoverSession()).isFalse();
+
+        verify(restartService).restartApp();
+        verify(feignClient, never()).registerWorker(any());
+    }
+}
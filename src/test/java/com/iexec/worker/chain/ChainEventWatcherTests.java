@@ -0,0 +1,240 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ChainEventWatcherTests {
+
+    private static final String CHAIN_TASK_ID = "0xd94b63fc2d3ec4b96daf84b403bbafdc8c8517e8e2addd51fec0fa4e67801be8";
+    private static final String WORKER_ADDRESS = "0x1a69b2eb604db8eba185df03ea4f5288dcbbd248";
+
+    @Mock
+    private IexecHubService iexecHubService;
+
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
+    @Mock
+    private ChainTaskEventListener listener;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    // stands in for the chain node
+    @Mock
+    private Web3j web3j;
+
+    private ChainEventWatcher chainEventWatcher;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(workerConfigurationService.getChainEventPollingPeriod()).thenReturn(1000L);
+        when(iexecHubService.getWeb3j()).thenReturn(web3j);
+        when(iexecHubService.getHubAddress()).thenReturn("0x60E25C038D70A15364DAc11A042DB1dD7A2cccBC");
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(16L);
+        nodeReachedBlock(16);
+
+        chainEventWatcher = new ChainEventWatcher(iexecHubService, chainHeadTracker, listener,
+                workerConfigurationService);
+    }
+
+    @After
+    public void tearDown() {
+        chainEventWatcher.onPreDestroy();
+    }
+
+    private static <T extends Response> Request request(T response) throws IOException {
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(response);
+        return request;
+    }
+
+    private void nodeReachedBlock(long blockNumber) throws IOException {
+        EthBlockNumber ethBlockNumber = new EthBlockNumber();
+        ethBlockNumber.setResult("0x" + Long.toHexString(blockNumber));
+        doReturn(request(ethBlockNumber)).when(web3j).ethBlockNumber();
+    }
+
+    private void nodeReturnsLogs(EthLog.LogResult... logs) throws IOException {
+        EthLog ethLog = new EthLog();
+        ethLog.setResult(Arrays.asList(logs));
+        doReturn(request(ethLog)).when(web3j).ethGetLogs(any());
+    }
+
+    // [fromBlock, toBlock] of each eth_getLogs
+    private List<long[]> queriedRanges() {
+        ArgumentCaptor<EthFilter> captor = ArgumentCaptor.forClass(EthFilter.class);
+        verify(web3j, atLeastOnce()).ethGetLogs(captor.capture());
+        List<long[]> ranges = new ArrayList<>();
+        for (EthFilter filter : captor.getAllValues()) {
+            ranges.add(new long[]{
+                    ((DefaultBlockParameterNumber) filter.getFromBlock()).getBlockNumber().longValue(),
+                    ((DefaultBlockParameterNumber) filter.getToBlock()).getBlockNumber().longValue()});
+        }
+        return ranges;
+    }
+
+    private static EthLog.LogObject buildLog(List<String> topics) {
+        EthLog.LogObject log = new EthLog.LogObject();
+        log.setTopics(topics);
+        log.setBlockNumber("0x10");
+        log.setData("0x");
+        return log;
+    }
+
+    @Test
+    public void shouldPublishConsensusEvent() throws IOException {
+        nodeReturnsLogs(buildLog(Arrays.asList(ChainTaskEventType.CONSENSUS.getTopic(), CHAIN_TASK_ID)));
+
+        chainEventWatcher.poll();
+
+        ArgumentCaptor<ChainTaskEvent> captor = ArgumentCaptor.forClass(ChainTaskEvent.class);
+        verify(listener).onChainTaskEvent(captor.capture());
+        assertThat(captor.getValue().getChainTaskId()).isEqualTo(CHAIN_TASK_ID);
+        assertThat(captor.getValue().getType()).isEqualTo(ChainTaskEventType.CONSENSUS);
+        assertThat(captor.getValue().getBlockNumber()).isEqualTo(16);
+    }
+
+    @Test
+    public void shouldExtractWorkerOfRevealEvent() throws IOException {
+        String paddedWorker = "0x000000000000000000000000" + WORKER_ADDRESS.substring(2);
+        nodeReturnsLogs(buildLog(Arrays.asList(ChainTaskEventType.REVEAL.getTopic(), CHAIN_TASK_ID, paddedWorker)));
+
+        chainEventWatcher.poll();
+
+        ArgumentCaptor<ChainTaskEvent> captor = ArgumentCaptor.forClass(ChainTaskEvent.class);
+        verify(listener).onChainTaskEvent(captor.capture());
+        assertThat(captor.getValue().getType()).isEqualTo(ChainTaskEventType.REVEAL);
+        assertThat(captor.getValue().getWorkerAddress()).isEqualTo(WORKER_ADDRESS);
+    }
+
+    @Test
+    public void shouldIgnoreUnknownEvent() throws IOException {
+        nodeReturnsLogs(buildLog(Arrays.asList("0x1234", CHAIN_TASK_ID)));
+
+        chainEventWatcher.poll();
+
+        verify(listener, never()).onChainTaskEvent(any());
+    }
+
+    @Test
+    public void shouldRetrySameRangeAfterError() throws IOException {
+        EthLog ethLog = new EthLog();
+        ethLog.setError(new Response.Error(-32000, "header not found"));
+        doReturn(request(ethLog)).when(web3j).ethGetLogs(any());
+        chainEventWatcher.poll();
+
+        nodeReturnsLogs(buildLog(Arrays.asList(ChainTaskEventType.CONSENSUS.getTopic(), CHAIN_TASK_ID)));
+        chainEventWatcher.poll();
+
+        verify(listener, times(1)).onChainTaskEvent(any());
+    }
+
+    @Test
+    public void shouldNotQueryLogsWithoutNewBlock() throws IOException {
+        nodeReturnsLogs();
+        chainEventWatcher.poll();
+        chainEventWatcher.poll();
+
+        verify(web3j, times(1)).ethGetLogs(any());
+        verify(listener, never()).onChainTaskEvent(any());
+    }
+
+    @Test
+    public void shouldNotQueryLogsBeyondEndpointHeight() throws IOException {
+        nodeReturnsLogs();
+        chainEventWatcher.poll();
+
+        // the head moved to 18 but the endpoint serving the logs is still at 17: it would return no log for 18
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(18L);
+        nodeReachedBlock(17);
+        chainEventWatcher.poll();
+
+        nodeReachedBlock(18);
+        nodeReturnsLogs(buildLog(Arrays.asList(ChainTaskEventType.CONSENSUS.getTopic(), CHAIN_TASK_ID)));
+        chainEventWatcher.poll();
+
+        List<long[]> ranges = queriedRanges();
+        assertThat(ranges).hasSize(3);
+        assertThat(ranges.get(0)).containsExactly(16, 16);
+        assertThat(ranges.get(1)).containsExactly(17, 17);
+        assertThat(ranges.get(2)).containsExactly(18, 18);
+        verify(listener, times(1)).onChainTaskEvent(any());
+    }
+
+    @Test
+    public void shouldNotMarkBlocksAsSeenWhileEndpointLags() throws IOException {
+        nodeReturnsLogs();
+        chainEventWatcher.poll();
+
+        // the endpoint is behind the head, nothing it can return yet
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(17L);
+        nodeReachedBlock(16);
+        chainEventWatcher.poll();
+        verify(web3j, times(1)).ethGetLogs(any());
+
+        nodeReachedBlock(17);
+        nodeReturnsLogs(buildLog(Arrays.asList(ChainTaskEventType.CONSENSUS.getTopic(), CHAIN_TASK_ID)));
+        chainEventWatcher.poll();
+
+        verify(listener, times(1)).onChainTaskEvent(any());
+    }
+
+    @Test
+    public void shouldSplitLongRangeIntoChunks() throws IOException {
+        nodeReturnsLogs();
+        chainEventWatcher.poll();
+
+        long head = 16 + 2 * ChainEventWatcher.MAX_BLOCK_RANGE + 500;
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(head);
+        nodeReachedBlock(head);
+        chainEventWatcher.poll();
+
+        List<long[]> ranges = queriedRanges();
+        assertThat(ranges).hasSize(4);
+        assertThat(ranges.get(1)).containsExactly(17, 16 + ChainEventWatcher.MAX_BLOCK_RANGE);
+        assertThat(ranges.get(2)).containsExactly(17 + ChainEventWatcher.MAX_BLOCK_RANGE,
+                16 + 2 * ChainEventWatcher.MAX_BLOCK_RANGE);
+        assertThat(ranges.get(3)).containsExactly(17 + 2 * ChainEventWatcher.MAX_BLOCK_RANGE, head);
+    }
+
+    @Test
+    public void shouldFetchEventsOfPushedHeadOnceEndpointReachesIt() throws IOException {
+        nodeReturnsLogs();
+        chainEventWatcher.poll();
+
+        // head 17 pushed over the websocket, the HTTP endpoint hasn't imported it yet
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(17L);
+        chainEventWatcher.poll();
+        verify(web3j, times(1)).ethGetLogs(any());
+
+        nodeReachedBlock(17);
+        nodeReturnsLogs(buildLog(Arrays.asList(ChainTaskEventType.CONSENSUS.getTopic(), CHAIN_TASK_ID)));
+
+        // fetched again without waiting for the next poll
+        verify(listener, timeout(3000)).onChainTaskEvent(any());
+        assertThat(queriedRanges().get(1)).containsExactly(17, 17);
+    }
+}
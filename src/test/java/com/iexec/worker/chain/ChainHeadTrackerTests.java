@@ -0,0 +1,146 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+public class ChainHeadTrackerTests {
+
+    private static final long POLLING_PERIOD = 60000;
+    // ms, an old block so that chain time and local time differ
+    private static final long BLOCK_TIMESTAMP = 1500000000000L;
+
+    @Mock
+    private Web3jService web3jService;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    @Mock
+    private Web3j web3j;
+
+    private ChainHeadTracker chainHeadTracker;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(web3jService.getWeb3j()).thenReturn(web3j);
+        when(workerConfigurationService.getChainHeadPollingPeriod()).thenReturn(POLLING_PERIOD);
+        chainHeadTracker = new ChainHeadTracker(web3jService, workerConfigurationService);
+    }
+
+    // the node answers the latest block with the given head (timestamp in s)
+    private void nodeReturnsHead(long number, long timestamp) throws IOException {
+        EthBlock.Block block = new EthBlock.Block();
+        block.setNumber("0x" + Long.toHexString(number));
+        block.setTimestamp("0x" + Long.toHexString(timestamp));
+        EthBlock ethBlock = new EthBlock();
+        ethBlock.setResult(block);
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(ethBlock);
+        doReturn(request).when(web3j).ethGetBlockByNumber(any(), anyBoolean());
+    }
+
+    @Test
+    public void shouldMoveChainTimeWithLocalClock() throws InterruptedException {
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP);
+        long chainTime = chainHeadTracker.getChainTime();
+
+        Thread.sleep(50);
+
+        assertThat(chainTime).isBetween(BLOCK_TIMESTAMP, BLOCK_TIMESTAMP + 50);
+        assertThat(chainHeadTracker.getChainTime() - chainTime).isBetween(50L, 200L);
+    }
+
+    @Test
+    public void shouldConvertChainTimeToLocalTime() {
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP);
+        long now = System.currentTimeMillis();
+
+        // a deadline one minute ahead on chain is one minute ahead locally, whatever the drift of the clocks
+        long localTime = chainHeadTracker.toLocalTime(chainHeadTracker.getChainTime() + 60000);
+
+        assertThat(localTime - now).isBetween(59900L, 60100L);
+        assertThat(chainHeadTracker.toLocalTime(BLOCK_TIMESTAMP)).isLessThanOrEqualTo(now);
+    }
+
+    @Test
+    public void shouldIgnoreOlderOrSameHead() {
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP);
+
+        chainHeadTracker.onNewHead(9, BLOCK_TIMESTAMP + 3600000);
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP + 3600000);
+
+        assertThat(chainHeadTracker.getHeadBlockNumber()).isEqualTo(10);
+        assertThat(chainHeadTracker.getChainTime()).isLessThan(BLOCK_TIMESTAMP + 3600000);
+
+        chainHeadTracker.onNewHead(11, BLOCK_TIMESTAMP + 5000);
+
+        assertThat(chainHeadTracker.getHeadBlockNumber()).isEqualTo(11);
+        assertThat(chainHeadTracker.getChainTime()).isGreaterThanOrEqualTo(BLOCK_TIMESTAMP + 5000);
+    }
+
+    @Test
+    public void shouldNotifyNewHeadsOnly() {
+        StringBuilder notified = new StringBuilder();
+        chainHeadTracker.addHeadListener(number -> notified.append(number).append(' '));
+
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP);
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP);
+        chainHeadTracker.onNewHead(11, BLOCK_TIMESTAMP);
+
+        assertThat(notified.toString()).isEqualTo("10 11 ");
+    }
+
+    @Test
+    public void shouldReadHeadBeforeFirstPoll() throws IOException {
+        nodeReturnsHead(42, BLOCK_TIMESTAMP / 1000);
+
+        assertThat(chainHeadTracker.getHeadBlockNumber()).isEqualTo(42);
+        assertThat(chainHeadTracker.getChainTime()).isGreaterThanOrEqualTo(BLOCK_TIMESTAMP);
+        // read once, then kept
+        verify(web3j, times(1)).ethGetBlockByNumber(any(), anyBoolean());
+    }
+
+    @Test
+    public void shouldUseLocalClockWithoutHead() throws IOException {
+        doThrow(new IllegalStateException("node unreachable")).when(web3j).ethGetBlockByNumber(any(), anyBoolean());
+        long now = System.currentTimeMillis();
+
+        assertThat(chainHeadTracker.getHeadBlockNumber()).isZero();
+        assertThat(chainHeadTracker.getChainTime()).isGreaterThanOrEqualTo(now);
+    }
+
+    @Test
+    public void shouldSkipPollWhileHeadsArePushed() throws IOException {
+        nodeReturnsHead(42, BLOCK_TIMESTAMP / 1000);
+        chainHeadTracker.onNewHead(10, BLOCK_TIMESTAMP);
+
+        chainHeadTracker.poll();
+
+        verify(web3j, never()).ethGetBlockByNumber(any(), anyBoolean());
+        assertThat(chainHeadTracker.getHeadBlockNumber()).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldPollWithoutPushedHeads() throws IOException {
+        nodeReturnsHead(42, BLOCK_TIMESTAMP / 1000);
+
+        chainHeadTracker.poll();
+
+        verify(web3j, times(1)).ethGetBlockByNumber(any(), anyBoolean());
+        assertThat(chainHeadTracker.getHeadBlockNumber()).isEqualTo(42);
+    }
+}
@@ -0,0 +1,76 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ChainPushClientTests {
+
+    @Mock
+    private IexecHubService iexecHubService;
+
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
+    @Mock
+    private ChainEventWatcher chainEventWatcher;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    @Mock
+    private WebSocketSession session;
+
+    private ChainPushClient chainPushClient;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(workerConfigurationService.getBlockchainWsUrl()).thenReturn("ws://localhost:8546");
+        chainPushClient = new ChainPushClient(iexecHubService, chainHeadTracker, chainEventWatcher,
+                workerConfigurationService);
+    }
+
+    private void receive(String payload) throws IOException {
+        chainPushClient.handleTextMessage(session, new TextMessage(payload));
+    }
+
+    @Test
+    public void shouldForwardPushedHead() throws IOException {
+        receive("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"0xheads\"}");
+
+        receive("{\"jsonrpc\":\"2.0\",\"method\":\"eth_subscription\",\"params\":{\"subscription\":\"0xheads\"," +
+                "\"result\":{\"number\":\"0x1b4\",\"timestamp\":\"0x5c0fe6a0\"}}}");
+
+        verify(chainHeadTracker).onNewHead(436, 0x5c0fe6a0L * 1000);
+        verify(chainEventWatcher).pollNow();
+    }
+
+    @Test
+    public void shouldPollEventsOnPushedLog() throws IOException {
+        receive("{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":\"0xlogs\"}");
+
+        receive("{\"jsonrpc\":\"2.0\",\"method\":\"eth_subscription\",\"params\":{\"subscription\":\"0xlogs\"," +
+                "\"result\":{\"blockNumber\":\"0x1b4\"}}}");
+
+        verify(chainEventWatcher).pollNow();
+        verify(chainHeadTracker, never()).onNewHead(anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldIgnoreUnknownSubscription() throws IOException {
+        receive("{\"jsonrpc\":\"2.0\",\"method\":\"eth_subscription\",\"params\":{\"subscription\":\"0xother\"," +
+                "\"result\":{}}}");
+
+        verifyZeroInteractions(chainEventWatcher, chainHeadTracker);
+    }
+}
@@ -28,12 +28,16 @@ public class ContributionServiceTests {
     @Mock
     private IexecHubService iexecHubService;
 
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
     @InjectMocks
     private ContributionService contributionService;
 
     @Before
     public void beforeEach() {
         MockitoAnnotations.initMocks(this);
+        when(chainHeadTracker.getChainTime()).thenReturn(new Date().getTime());
     }
 
     @Test
@@ -0,0 +1,215 @@
+package com.iexec.worker.chain;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class EscalatingTransactionManagerTests {
+
+    private static final String PRIVATE_KEY = "0x2a46e8c1535792f6689b10d5c882c9363910c30751ec193ae71ec71630077909";
+    private static final String HUB_ADDRESS = "0x60e25c038d70a15364dac11a042db1dd7a2cccbc";
+    private static final String HASH = "0xd94b63fc2d3ec4b96daf84b403bbafdc8c8517e8e2addd51fec0fa4e67801be8";
+    private static final String REPLACEMENT_HASH = "0x1a69b2eb604db8eba185df03ea4f5288dcbbd2481a69b2eb604db8eba185df03";
+    private static final BigInteger WRAPPER_GAS_LIMIT = BigInteger.valueOf(4300000);
+
+    @Mock
+    private Web3j web3j;
+
+    @Mock
+    private GasPriceStrategy gasPriceStrategy;
+
+    private EscalatingTransactionManager transactionManager;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(gasPriceStrategy.getGasPrice(anyLong(), any())).thenReturn(BigInteger.TEN);
+        transactionManager = new EscalatingTransactionManager(web3j, Credentials.create(PRIVATE_KEY),
+                gasPriceStrategy, 60000);
+    }
+
+    private static <T extends Response> Request request(T response) throws IOException {
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(response);
+        return request;
+    }
+
+    private static String encodeRevertReason(String reason) {
+        byte[] bytes = reason.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[(bytes.length + 31) / 32 * 32];
+        System.arraycopy(bytes, 0, padded, 0, bytes.length);
+        return "0x08c379a0"
+                + Numeric.toHexStringNoPrefixZeroPadded(BigInteger.valueOf(32), 64)
+                + Numeric.toHexStringNoPrefixZeroPadded(BigInteger.valueOf(bytes.length), 64)
+                + Numeric.toHexStringNoPrefix(padded);
+    }
+
+    private void nodeSimulates(String callResult, long estimatedGas) throws IOException {
+        EthCall ethCall = new EthCall();
+        ethCall.setResult(callResult);
+        doReturn(request(ethCall)).when(web3j).ethCall(any(), any());
+        EthEstimateGas ethEstimateGas = new EthEstimateGas();
+        ethEstimateGas.setResult("0x" + Long.toHexString(estimatedGas));
+        doReturn(request(ethEstimateGas)).when(web3j).ethEstimateGas(any());
+    }
+
+    private static EthCall callError(int code, String message) {
+        EthCall ethCall = new EthCall();
+        ethCall.setError(new Response.Error(code, message));
+        return ethCall;
+    }
+
+    // the transaction is sent and mined right away
+    private void nodeAcceptsTransaction() throws IOException {
+        EthGetTransactionCount transactionCount = new EthGetTransactionCount();
+        transactionCount.setResult("0x5");
+        doReturn(request(transactionCount)).when(web3j).ethGetTransactionCount(any(), any());
+        EthSendTransaction ethSendTransaction = new EthSendTransaction();
+        ethSendTransaction.setResult(HASH);
+        doReturn(request(ethSendTransaction)).when(web3j).ethSendRawTransaction(anyString());
+        EthGetTransactionReceipt ethGetTransactionReceipt = new EthGetTransactionReceipt();
+        ethGetTransactionReceipt.setResult(new TransactionReceipt());
+        doReturn(request(ethGetTransactionReceipt)).when(web3j).ethGetTransactionReceipt(HASH);
+    }
+
+    @Test
+    public void shouldDecodeRevertReason() {
+        assertThat(EscalatingTransactionManager.decodeRevertReason(encodeRevertReason("task not active")))
+                .isEqualTo("task not active");
+        assertThat(EscalatingTransactionManager.decodeRevertReason("0x")).isEmpty();
+        assertThat(EscalatingTransactionManager.decodeRevertReason("0x08c379a0")).isEqualTo("reverted");
+    }
+
+    @Test
+    public void shouldNotSendRevertingTransaction() throws IOException {
+        nodeSimulates(encodeRevertReason("contribution deadline reached"), 100000);
+
+        Throwable thrown = catchThrowable(() -> transactionManager.sendTransaction(BigInteger.ONE,
+                WRAPPER_GAS_LIMIT, HUB_ADDRESS, "0x", BigInteger.ZERO));
+
+        assertThat(thrown).isInstanceOf(TransactionRevertedException.class)
+                .hasMessage("contribution deadline reached");
+        verify(web3j, never()).ethSendRawTransaction(anyString());
+    }
+
+    @Test
+    public void shouldSizeGasLimitFromEstimate() throws IOException {
+        nodeSimulates("0x", 100000);
+        nodeAcceptsTransaction();
+
+        EthSendTransaction sent = transactionManager.sendTransaction(BigInteger.ONE, WRAPPER_GAS_LIMIT,
+                HUB_ADDRESS, "0x", BigInteger.ZERO);
+
+        assertThat(sent.getTransactionHash()).isEqualTo(HASH);
+        ArgumentCaptor<String> signedTransaction = ArgumentCaptor.forClass(String.class);
+        verify(web3j).ethSendRawTransaction(signedTransaction.capture());
+        RawTransaction rawTransaction = TransactionDecoder.decode(signedTransaction.getValue());
+        // estimate + 20%, priced by the strategy
+        assertThat(rawTransaction.getGasLimit()).isEqualTo(BigInteger.valueOf(120000));
+        assertThat(rawTransaction.getGasPrice()).isEqualTo(BigInteger.TEN);
+        assertThat(rawTransaction.getNonce()).isEqualTo(BigInteger.valueOf(5));
+    }
+
+    @Test
+    public void shouldTakeRevertErrorForRevert() throws IOException {
+        doReturn(request(callError(3, "execution reverted"))).when(web3j).ethCall(any(), any());
+
+        Throwable thrown = catchThrowable(() -> transactionManager.sendTransaction(BigInteger.ONE,
+                WRAPPER_GAS_LIMIT, HUB_ADDRESS, "0x", BigInteger.ZERO));
+
+        assertThat(thrown).isInstanceOf(TransactionRevertedException.class);
+        verify(web3j, times(1)).ethCall(any(), any());
+        verify(web3j, never()).ethSendRawTransaction(anyString());
+    }
+
+    @Test
+    public void shouldRetrySimulationOnNodeError() throws IOException {
+        nodeSimulates("0x", 100000);
+        EthCall ethCall = new EthCall();
+        ethCall.setResult("0x");
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(callError(-32005, "request rate exceeded"), ethCall);
+        doReturn(request).when(web3j).ethCall(any(), any());
+        nodeAcceptsTransaction();
+
+        EthSendTransaction sent = transactionManager.sendTransaction(BigInteger.ONE, WRAPPER_GAS_LIMIT,
+                HUB_ADDRESS, "0x", BigInteger.ZERO);
+
+        assertThat(sent.getTransactionHash()).isEqualTo(HASH);
+    }
+
+    @Test
+    public void shouldNotTakeNodeErrorForRevert() throws IOException {
+        doReturn(request(callError(-32000, "header not found"))).when(web3j).ethCall(any(), any());
+
+        Throwable thrown = catchThrowable(() -> transactionManager.sendTransaction(BigInteger.ONE,
+                WRAPPER_GAS_LIMIT, HUB_ADDRESS, "0x", BigInteger.ZERO));
+
+        assertThat(thrown).isInstanceOf(IOException.class).isNotInstanceOf(TransactionRevertedException.class);
+        verify(web3j, times(3)).ethCall(any(), any());
+        verify(web3j, never()).ethSendRawTransaction(anyString());
+    }
+
+    @Test
+    public void shouldReturnFirstHashMinedAfterReplacement() throws IOException {
+        nodeSimulates("0x", 100000);
+        nodeAcceptsTransaction();
+        // replaced right away, then the deadline passes
+        transactionManager = new EscalatingTransactionManager(web3j, Credentials.create(PRIVATE_KEY),
+                gasPriceStrategy, 0);
+        when(gasPriceStrategy.getReplacementGasPrice(any(), anyLong(), any())).thenReturn(BigInteger.valueOf(11));
+        EthSendTransaction first = new EthSendTransaction();
+        first.setResult(HASH);
+        EthSendTransaction replacement = new EthSendTransaction();
+        replacement.setResult(REPLACEMENT_HASH);
+        Request sendRequest = mock(Request.class);
+        when(sendRequest.send()).thenReturn(first, replacement);
+        doReturn(sendRequest).when(web3j).ethSendRawTransaction(anyString());
+        // the first one is mined once the replacement has been sent
+        EthGetTransactionReceipt pending = new EthGetTransactionReceipt();
+        EthGetTransactionReceipt mined = new EthGetTransactionReceipt();
+        mined.setResult(new TransactionReceipt());
+        Request firstReceiptRequest = mock(Request.class);
+        when(firstReceiptRequest.send()).thenReturn(pending, mined);
+        doReturn(firstReceiptRequest).when(web3j).ethGetTransactionReceipt(HASH);
+        doReturn(request(pending)).when(web3j).ethGetTransactionReceipt(REPLACEMENT_HASH);
+
+        EthSendTransaction sent = transactionManager.withDeadline(System.currentTimeMillis() + 100, () -> {
+            try {
+                return transactionManager.sendTransaction(BigInteger.ONE, WRAPPER_GAS_LIMIT, HUB_ADDRESS, "0x",
+                        BigInteger.ZERO);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        verify(web3j, times(2)).ethSendRawTransaction(anyString());
+        assertThat(sent.getTransactionHash()).isEqualTo(HASH);
+    }
+}
@@ -0,0 +1,106 @@
+package com.iexec.worker.chain;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetBalance;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class GasBalanceServiceTests {
+
+    private static final String PRIVATE_KEY = "0x2a46e8c1535792f6689b10d5c882c9363910c30751ec193ae71ec71630077909";
+    private static final String CHAIN_TASK_ID = "0xd94b63fc2d3ec4b96daf84b403bbafdc8c8517e8e2addd51fec0fa4e67801be8";
+
+    @Mock
+    private Web3jService web3jService;
+
+    @Mock
+    private CredentialsService credentialsService;
+
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
+    @Mock
+    private GasPriceStrategy gasPriceStrategy;
+
+    @Mock
+    private Web3j web3j;
+
+    @InjectMocks
+    private GasBalanceService gasBalanceService;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(web3jService.getWeb3j()).thenReturn(web3j);
+        when(credentialsService.getCredentials()).thenReturn(Credentials.create(PRIVATE_KEY));
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(1L);
+        when(gasPriceStrategy.getReservationGasPrice()).thenReturn(BigInteger.ONE);
+    }
+
+    private static <T extends Response> Request request(T response) throws IOException {
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(response);
+        return request;
+    }
+
+    private void nodeReturnsBalance(long balance) throws IOException {
+        EthGetBalance ethGetBalance = new EthGetBalance();
+        ethGetBalance.setResult("0x" + Long.toHexString(balance));
+        doReturn(request(ethGetBalance)).when(web3j).ethGetBalance(any(), any());
+    }
+
+    @Test
+    public void shouldFetchBalanceOncePerBlock() throws IOException {
+        nodeReturnsBalance(10000000);
+
+        assertThat(gasBalanceService.hasEnoughGasToContribute()).isTrue();
+        assertThat(gasBalanceService.hasEnoughGasToReveal()).isTrue();
+
+        verify(web3j, times(1)).ethGetBalance(any(), any());
+    }
+
+    @Test
+    public void shouldReserveRevealOfContributedTask() throws IOException {
+        // enough for one contribute and one reveal (500000 + 200000) only
+        nodeReturnsBalance(700000);
+        assertThat(gasBalanceService.getAffordableContributeCount()).isEqualTo(1);
+
+        gasBalanceService.onTransactionMined(CHAIN_TASK_ID, GasBalanceService.TransactionType.CONTRIBUTE,
+                BigInteger.valueOf(500000));
+
+        // no new work, but the reveal of the contributed task is still affordable
+        assertThat(gasBalanceService.hasEnoughGasToContribute()).isFalse();
+        assertThat(gasBalanceService.hasEnoughGasToReveal()).isTrue();
+    }
+
+    @Test
+    public void shouldPriceReservationsWithStrategyPrice() throws IOException {
+        nodeReturnsBalance(1400000);
+        // the strategy pays twice the node price: one round only
+        when(gasPriceStrategy.getReservationGasPrice()).thenReturn(BigInteger.valueOf(2));
+
+        assertThat(gasBalanceService.getAffordableContributeCount()).isEqualTo(1);
+        verify(web3j, never()).ethGasPrice();
+    }
+
+    @Test
+    public void shouldNotLimitWhenGasIsFree() throws IOException {
+        when(gasPriceStrategy.getReservationGasPrice()).thenReturn(BigInteger.ZERO);
+        nodeReturnsBalance(0);
+
+        assertThat(gasBalanceService.hasEnoughGasToContribute()).isTrue();
+    }
+}
@@ -0,0 +1,204 @@
+package com.iexec.worker.chain;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+public class GasPriceStrategyTests {
+
+    private static final long DEFAULT_GAS_PRICE = 50;
+    private static final long MAX_GAS_PRICE = 100;
+    private static final long MAX_TRANSACTION_FEE = 1000000;
+    // max transaction fee / max gas price: the fee cap is below the max gas price from there
+    private static final BigInteger GAS_LIMIT = BigInteger.valueOf(10000);
+
+    @Mock
+    private Web3jService web3jService;
+
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    @Mock
+    private Web3j web3j;
+
+    private GasPriceStrategy gasPriceStrategy;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(web3jService.getWeb3j()).thenReturn(web3j);
+        when(workerConfigurationService.getDefaultGasPrice()).thenReturn(DEFAULT_GAS_PRICE);
+        when(workerConfigurationService.getMaxGasPrice()).thenReturn(MAX_GAS_PRICE);
+        when(workerConfigurationService.getMaxTransactionFee()).thenReturn(MAX_TRANSACTION_FEE);
+
+        EthGasPrice ethGasPrice = new EthGasPrice();
+        ethGasPrice.setResult("0x1");
+        doReturn(request(ethGasPrice)).when(web3j).ethGasPrice();
+
+        gasPriceStrategy = new GasPriceStrategy(web3jService, chainHeadTracker, workerConfigurationService);
+    }
+
+    @After
+    public void tearDown() {
+        gasPriceStrategy.onPreDestroy();
+    }
+
+    private static <T extends Response> Request request(T response) throws IOException {
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(response);
+        return request;
+    }
+
+    // a new head including transactions at the given prices, sampled by the next price request if not pushed
+    private void chainReturnsBlock(long number, long... gasPrices) throws IOException {
+        EthBlock.Block block = new EthBlock.Block();
+        block.setNumber("0x" + Long.toHexString(number));
+        List<EthBlock.TransactionResult> transactions = new ArrayList<>();
+        for (long gasPrice : gasPrices) {
+            EthBlock.TransactionObject transaction = new EthBlock.TransactionObject();
+            transaction.setGasPrice("0x" + Long.toHexString(gasPrice));
+            transactions.add(transaction);
+        }
+        block.setTransactions(transactions);
+        EthBlock ethBlock = new EthBlock();
+        ethBlock.setResult(block);
+        doReturn(request(ethBlock)).when(web3j).ethGetBlockByNumber(any(), anyBoolean());
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(number);
+    }
+
+    private void sampleBlocks() throws IOException {
+        long farDeadline = System.currentTimeMillis() + 3600000;
+        chainReturnsBlock(1, 10, 50);
+        gasPriceStrategy.getGasPrice(farDeadline, GAS_LIMIT);
+        chainReturnsBlock(2, 40, 30);
+        gasPriceStrategy.getGasPrice(farDeadline, GAS_LIMIT);
+        chainReturnsBlock(3, 20);
+        gasPriceStrategy.getGasPrice(farDeadline, GAS_LIMIT);
+    }
+
+    @Test
+    public void shouldUseNodePriceWithoutSample() {
+        assertThat(gasPriceStrategy.computeGasPrice(3600000)).isEqualTo(BigInteger.valueOf(DEFAULT_GAS_PRICE));
+
+        gasPriceStrategy.setNodeGasPrice(BigInteger.valueOf(7));
+
+        assertThat(gasPriceStrategy.computeGasPrice(3600000)).isEqualTo(BigInteger.valueOf(7));
+    }
+
+    @Test
+    public void shouldUseDefaultPriceWhileNodeFails() throws IOException {
+        Request failingRequest = mock(Request.class);
+        when(failingRequest.send()).thenThrow(new IOException("connection refused"));
+        doReturn(failingRequest).when(web3j).ethGasPrice();
+        doReturn(failingRequest).when(web3j).ethGetBlockByNumber(any(), anyBoolean());
+        when(chainHeadTracker.getHeadBlockNumber()).thenReturn(1L);
+        long farDeadline = System.currentTimeMillis() + 3600000;
+
+        assertThat(gasPriceStrategy.getGasPrice(farDeadline, GAS_LIMIT)).isEqualTo(BigInteger.valueOf(DEFAULT_GAS_PRICE));
+        // still escalates
+        assertThat(gasPriceStrategy.getReplacementGasPrice(BigInteger.valueOf(DEFAULT_GAS_PRICE), farDeadline,
+                GAS_LIMIT)).isEqualTo(BigInteger.valueOf(56));
+
+        // the node is back: the same head is sampled again
+        EthGasPrice ethGasPrice = new EthGasPrice();
+        ethGasPrice.setResult("0x1");
+        doReturn(request(ethGasPrice)).when(web3j).ethGasPrice();
+        chainReturnsBlock(1, 10);
+
+        assertThat(gasPriceStrategy.getGasPrice(farDeadline, GAS_LIMIT)).isEqualTo(BigInteger.valueOf(10));
+    }
+
+    @Test
+    public void shouldPriceByTimeLeft() throws IOException {
+        sampleBlocks();
+
+        // lowest included prices are 10, 30 and 20
+        assertThat(gasPriceStrategy.computeGasPrice(3600000)).isEqualTo(BigInteger.valueOf(20));
+        assertThat(gasPriceStrategy.computeGasPrice(300000)).isEqualTo(BigInteger.valueOf(30));
+        assertThat(gasPriceStrategy.computeGasPrice(60000)).isEqualTo(BigInteger.valueOf(37));
+    }
+
+    @Test
+    public void shouldNotSampleSameBlockTwice() throws IOException {
+        sampleBlocks();
+
+        gasPriceStrategy.getGasPrice(System.currentTimeMillis() + 3600000, GAS_LIMIT);
+
+        verify(web3j, times(3)).ethGetBlockByNumber(any(), anyBoolean());
+    }
+
+    @Test
+    public void shouldEscalateUpToMaxGasPrice() throws IOException {
+        sampleBlocks();
+        long farDeadline = System.currentTimeMillis() + 3600000;
+
+        assertThat(gasPriceStrategy.getReplacementGasPrice(BigInteger.valueOf(20), farDeadline, GAS_LIMIT))
+                .isEqualTo(BigInteger.valueOf(22));
+        assertThat(gasPriceStrategy.getReplacementGasPrice(BigInteger.valueOf(95), farDeadline, GAS_LIMIT))
+                .isEqualTo(BigInteger.valueOf(MAX_GAS_PRICE));
+        // not replaced anymore
+        assertThat(gasPriceStrategy.getReplacementGasPrice(BigInteger.valueOf(MAX_GAS_PRICE), farDeadline,
+                GAS_LIMIT)).isEqualTo(BigInteger.valueOf(MAX_GAS_PRICE));
+    }
+
+    @Test
+    public void shouldCapTransactionFee() throws IOException {
+        sampleBlocks();
+        long farDeadline = System.currentTimeMillis() + 3600000;
+        // 50000 gas: at most 20 per gas
+        BigInteger gasLimit = BigInteger.valueOf(50000);
+
+        assertThat(gasPriceStrategy.getPriceCap(gasLimit)).isEqualTo(BigInteger.valueOf(20));
+        assertThat(gasPriceStrategy.getGasPrice(System.currentTimeMillis() + 60000, gasLimit))
+                .isEqualTo(BigInteger.valueOf(20));
+        // a replacement never costs more than the cap either
+        assertThat(gasPriceStrategy.getReplacementGasPrice(BigInteger.valueOf(19), farDeadline, gasLimit))
+                .isEqualTo(BigInteger.valueOf(20));
+        assertThat(gasPriceStrategy.getReplacementGasPrice(BigInteger.valueOf(20), farDeadline, gasLimit))
+                .isEqualTo(BigInteger.valueOf(20));
+    }
+
+    @Test
+    public void shouldSampleEveryNewHead() throws Exception {
+        ArgumentCaptor<LongConsumer> headListener = ArgumentCaptor.forClass(LongConsumer.class);
+        verify(chainHeadTracker).addHeadListener(headListener.capture());
+
+        chainReturnsBlock(1, 10);
+        headListener.getValue().accept(1);
+        verify(web3j, timeout(1000)).ethGetBlockByNumber(any(), anyBoolean());
+        chainReturnsBlock(2, 30);
+        headListener.getValue().accept(2);
+        verify(web3j, timeout(1000).times(2)).ethGetBlockByNumber(any(), anyBoolean());
+        // the sample is added once the block is decoded
+        long timeout = System.currentTimeMillis() + 1000;
+        while (gasPriceStrategy.computeGasPrice(300000).intValue() != 30 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        // both blocks sampled without any transaction being priced
+        assertThat(gasPriceStrategy.computeGasPrice(300000)).isEqualTo(BigInteger.valueOf(30));
+    }
+}
@@ -0,0 +1,72 @@
+package com.iexec.worker.chain;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class IexecHubServiceTests {
+
+    // read from the chain: counts the reads, returns the given value
+    private static Optional<String> read(AtomicInteger reads, String value) {
+        reads.incrementAndGet();
+        return Optional.ofNullable(value);
+    }
+
+    @Test
+    public void shouldReadFinalValueOnce() {
+        Map<String, String> cache = IexecHubService.newChainCache();
+        AtomicInteger reads = new AtomicInteger();
+
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, "COMPLETED"))).contains("COMPLETED");
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, "COMPLETED"))).contains("COMPLETED");
+
+        assertThat(reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCacheNonFinalValue() {
+        Map<String, String> cache = IexecHubService.newChainCache();
+        AtomicInteger reads = new AtomicInteger();
+
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, "ACTIVE"),
+                value -> value.equals("COMPLETED"))).contains("ACTIVE");
+        // the status has changed meanwhile
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, "COMPLETED"),
+                value -> value.equals("COMPLETED"))).contains("COMPLETED");
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, "COMPLETED"),
+                value -> value.equals("COMPLETED"))).contains("COMPLETED");
+
+        assertThat(reads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotCacheMissingValue() {
+        Map<String, String> cache = IexecHubService.newChainCache();
+        AtomicInteger reads = new AtomicInteger();
+
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, null))).isEmpty();
+        assertThat(IexecHubService.getCached(cache, "key", () -> read(reads, "COMPLETED"))).contains("COMPLETED");
+
+        assertThat(reads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntry() {
+        Map<Integer, String> cache = IexecHubService.newChainCache();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value");
+        }
+        // 0 is used again, 1 is now the least recently used one
+        cache.get(0);
+
+        cache.put(1000, "value");
+
+        assertThat(cache).hasSize(1000);
+        assertThat(cache).containsKeys(0, 1000);
+        assertThat(cache).doesNotContainKey(1);
+    }
+}
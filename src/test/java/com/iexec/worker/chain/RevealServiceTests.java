@@ -36,12 +36,16 @@ public class RevealServiceTests {
     @Mock
     private CredentialsService credentialsService;
 
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
     @InjectMocks
     private RevealService revealService;
 
     @Before
     public void beforeEach() {
         MockitoAnnotations.initMocks(this);
+        when(chainHeadTracker.getChainTime()).thenReturn(new Date().getTime());
     }
 
     // main test that should be valid, all other tests are failing cases of this one
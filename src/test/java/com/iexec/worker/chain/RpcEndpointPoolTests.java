@@ -0,0 +1,180 @@
+package com.iexec.worker.chain;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+import org.web3j.protocol.Web3j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RpcEndpointPoolTests {
+
+    private List<HttpServer> servers = new ArrayList<>();
+    private RpcEndpointPool pool;
+
+    @After
+    public void tearDown() {
+        servers.forEach(server -> server.stop(0));
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // local stand-in for an ethereum node answering every request with the given block number
+    private String startStubNode(long blockNumber, long delay, AtomicInteger callCounter) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            callCounter.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = ("{\"jsonrpc\":\"2.0\",\"id\":0,\"result\":\"0x" + Long.toHexString(blockNumber) + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private String stoppedNodeUrl() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String url = "http://localhost:" + server.getAddress().getPort();
+        server.stop(0);
+        return url;
+    }
+
+    @Test
+    public void shouldRankLaggingEndpointLast() throws IOException {
+        String lagging = startStubNode(100, 0, new AtomicInteger());
+        String upToDate = startStubNode(110, 20, new AtomicInteger());
+        pool = new RpcEndpointPool(Arrays.asList(lagging, upToDate), 2, 300);
+
+        pool.probe();
+
+        assertThat(pool.getRankedUrls()).containsExactly(upToDate, lagging);
+    }
+
+    @Test
+    public void shouldRankFasterEndpointFirst() throws IOException {
+        String slow = startStubNode(100, 100, new AtomicInteger());
+        String fast = startStubNode(100, 0, new AtomicInteger());
+        pool = new RpcEndpointPool(Arrays.asList(slow, fast), 2, 300);
+
+        pool.probe();
+
+        assertThat(pool.getRankedUrls()).containsExactly(fast, slow);
+    }
+
+    @Test
+    public void shouldFailoverToNextEndpoint() throws IOException {
+        String down = stoppedNodeUrl();
+        String up = startStubNode(100, 0, new AtomicInteger());
+        pool = new RpcEndpointPool(Arrays.asList(down, up), 2, 300);
+        Web3j web3j = Web3j.build(pool);
+
+        assertThat(web3j.ethBlockNumber().send().getBlockNumber().longValue()).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldHedgeSlowRead() throws IOException {
+        AtomicInteger slowCalls = new AtomicInteger();
+        AtomicInteger fastCalls = new AtomicInteger();
+        String fast = startStubNode(100, 0, fastCalls);
+        String slow = startStubNode(100, 2000, slowCalls);
+        pool = new RpcEndpointPool(Arrays.asList(slow, fast), 2, 50);
+        Web3j web3j = Web3j.build(pool);
+        // no probe: the slow endpoint is ranked first
+
+        long start = System.currentTimeMillis();
+        long blockNumber = RpcEndpointPool.hedged(() -> {
+            try {
+                return web3j.ethBlockNumber().send().getBlockNumber().longValue();
+            } catch (IOException e) {
+                return -1L;
+            }
+        });
+
+        assertThat(blockNumber).isEqualTo(100);
+        assertThat(System.currentTimeMillis() - start).isLessThan(1500);
+        assertThat(slowCalls.get()).isEqualTo(1);
+        assertThat(fastCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCoalesceIdenticalReadsInFlight() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        String node = startStubNode(100, 300, calls);
+        pool = new RpcEndpointPool(Collections.singletonList(node), 2, 300);
+        Web3j web3j = Web3j.build(pool);
+
+        CompletableFuture<BigInteger> first = CompletableFuture.supplyAsync(() -> blockNumber(web3j));
+        CompletableFuture<BigInteger> second = CompletableFuture.supplyAsync(() -> blockNumber(web3j));
+
+        assertThat(first.get()).isEqualTo(BigInteger.valueOf(100));
+        assertThat(second.get()).isEqualTo(BigInteger.valueOf(100));
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(pool.getCoalescedRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCoalesceReadsOfDifferentPriorities() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        String node = startStubNode(100, 300, calls);
+        pool = new RpcEndpointPool(Collections.singletonList(node), 2, 300);
+        Web3j web3j = Web3j.build(pool);
+
+        CompletableFuture<BigInteger> background = CompletableFuture.supplyAsync(() -> blockNumber(web3j));
+        CompletableFuture<BigInteger> transaction = CompletableFuture.supplyAsync(() ->
+                RpcEndpointPool.prioritized(RpcRateLimiter.Priority.TRANSACTION, () -> blockNumber(web3j)));
+
+        assertThat(background.get()).isEqualTo(BigInteger.valueOf(100));
+        assertThat(transaction.get()).isEqualTo(BigInteger.valueOf(100));
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(pool.getCoalescedRequestCount()).isZero();
+    }
+
+    @Test
+    public void shouldSendPinnedReadsToSameEndpoint() throws IOException {
+        AtomicInteger firstCalls = new AtomicInteger();
+        AtomicInteger secondCalls = new AtomicInteger();
+        String first = startStubNode(100, 0, firstCalls);
+        String second = startStubNode(90, 0, secondCalls);
+        pool = new RpcEndpointPool(Arrays.asList(first, second), 2, 300);
+        Web3j web3j = Web3j.build(pool);
+
+        List<BigInteger> blockNumbers = RpcEndpointPool.pinned(() ->
+                Arrays.asList(blockNumber(web3j), blockNumber(web3j), blockNumber(web3j)));
+
+        assertThat(blockNumbers).containsOnly(BigInteger.valueOf(100));
+        assertThat(firstCalls.get()).isEqualTo(3);
+        assertThat(secondCalls.get()).isZero();
+    }
+
+    private static BigInteger blockNumber(Web3j web3j) {
+        try {
+            return web3j.ethBlockNumber().send().getBlockNumber();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.iexec.worker.chain;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class RpcRateLimiterTests {
+
+    @Test
+    public void shouldNotThrottleWhenUnlimited() throws InterruptedIOException {
+        RpcRateLimiter rateLimiter = new RpcRateLimiter(0);
+
+        for (int i = 0; i < 1000; i++) {
+            rateLimiter.acquire(RpcRateLimiter.Priority.BACKGROUND);
+        }
+
+        assertThat(rateLimiter.getThrottledCount()).isZero();
+    }
+
+    @Test
+    public void shouldKeepReserveForHigherPriorities() throws InterruptedIOException {
+        RpcRateLimiter rateLimiter = new RpcRateLimiter(10);
+
+        // background requests leave half of the bucket
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquire(RpcRateLimiter.Priority.BACKGROUND);
+        }
+        assertThat(rateLimiter.getThrottledCount()).isZero();
+        // transactions can take the rest right away
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquire(RpcRateLimiter.Priority.TRANSACTION);
+        }
+        assertThat(rateLimiter.getThrottledCount()).isZero();
+    }
+
+    @Test
+    public void shouldWaitForRefillWhenEmpty() throws InterruptedIOException {
+        RpcRateLimiter rateLimiter = new RpcRateLimiter(10);
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.acquire(RpcRateLimiter.Priority.TRANSACTION);
+        }
+
+        long start = System.currentTimeMillis();
+        rateLimiter.acquire(RpcRateLimiter.Priority.TRANSACTION);
+
+        // one token every 100ms
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(50);
+        assertThat(rateLimiter.getThrottledCount()).isEqualTo(1);
+    }
+}
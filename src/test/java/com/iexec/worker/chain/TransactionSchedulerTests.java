@@ -0,0 +1,111 @@
+package com.iexec.worker.chain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.iexec.worker.chain.GasBalanceService.TransactionType.CONTRIBUTE;
+import static com.iexec.worker.chain.GasBalanceService.TransactionType.REVEAL;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.catchThrowable;
+
+public class TransactionSchedulerTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionScheduler transactionScheduler;
+    private CountDownLatch releaseFirst;
+    private List<String> sent;
+
+    @Before
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionScheduler = new TransactionScheduler(meterRegistry);
+        releaseFirst = new CountDownLatch(1);
+        sent = new CopyOnWriteArrayList<>();
+        // keeps the sending thread busy while the next transactions are queued
+        transactionScheduler.submit("busy", CONTRIBUTE, Long.MAX_VALUE, BigInteger.ZERO, () -> {
+            try {
+                releaseFirst.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "busy";
+        });
+    }
+
+    @After
+    public void tearDown() {
+        transactionScheduler.shutdown();
+    }
+
+    private Future<String> submit(String chainTaskId, GasBalanceService.TransactionType type, long deadline,
+                                  long value) {
+        return transactionScheduler.submit(chainTaskId, type, deadline, BigInteger.valueOf(value), () -> {
+            sent.add(chainTaskId);
+            return chainTaskId;
+        });
+    }
+
+    @Test
+    public void shouldSendClosestDeadlineFirst() throws Exception {
+        long now = System.currentTimeMillis();
+        submit("farContribute", CONTRIBUTE, now + 600000, 1);
+        submit("nearReveal", REVEAL, now + 120000, 1);
+        Future<String> last = submit("middleContribute", CONTRIBUTE, now + 300000, 1);
+
+        assertThat(transactionScheduler.getWaitingTransactionCount()).isEqualTo(3);
+        releaseFirst.countDown();
+        last.get(2, TimeUnit.SECONDS);
+
+        assertThat(sent).containsExactly("nearReveal", "middleContribute", "farContribute");
+    }
+
+    @Test
+    public void shouldSendHighestStakeFirstForCloseDeadlines() throws Exception {
+        long deadline = (System.currentTimeMillis() / 60000 + 10) * 60000;
+        submit("lowStake", CONTRIBUTE, deadline + 1000, 1);
+        Future<String> last = submit("highStake", REVEAL, deadline + 2000, 10);
+
+        releaseFirst.countDown();
+        last.get(2, TimeUnit.SECONDS);
+        Thread.sleep(50);
+
+        assertThat(sent).containsExactly("highStake", "lowStake");
+    }
+
+    @Test
+    public void shouldDropTransactionPastDeadline() throws Exception {
+        Future<String> expired = submit("expired", REVEAL, System.currentTimeMillis() + 50, 1);
+
+        Thread.sleep(100);
+        releaseFirst.countDown();
+
+        assertThat(expired.get(2, TimeUnit.SECONDS)).isNull();
+        assertThat(sent).isEmpty();
+        assertThat(meterRegistry.get("iexec.chain.tx.expired").tag("type", "REVEAL").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReleaseQueuedTransactionsOnShutdown() throws Exception {
+        Future<String> queued = submit("queued", CONTRIBUTE, Long.MAX_VALUE, 1);
+
+        transactionScheduler.shutdown();
+
+        Throwable thrown = catchThrowable(() -> queued.get(2, TimeUnit.SECONDS));
+        assertThat(thrown).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(submit("late", REVEAL, Long.MAX_VALUE, 1).isDone()).isTrue();
+        assertThat(sent).isEmpty();
+    }
+}
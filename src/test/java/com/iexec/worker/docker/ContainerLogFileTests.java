@@ -0,0 +1,59 @@
+package com.iexec.worker.docker;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ContainerLogFileTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void shouldWriteLogsUnderLimit() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("result/stdout.txt");
+        try (ContainerLogFile logFile = new ContainerLogFile(path, 100, ContainerLogFile.Policy.TRUNCATE)) {
+            logFile.write("line1\n");
+            logFile.write("line2\n");
+            assertThat(logFile.isTruncated()).isFalse();
+        }
+
+        assertThat(read(path)).isEqualTo("line1\nline2\n");
+    }
+
+    @Test
+    public void shouldKeepBeginningWhenTruncating() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("stdout.txt");
+        try (ContainerLogFile logFile = new ContainerLogFile(path, 8, ContainerLogFile.Policy.TRUNCATE)) {
+            logFile.write("0123456");
+            logFile.write("789abc");
+            logFile.write("def");
+            assertThat(logFile.isTruncated()).isTrue();
+        }
+
+        assertThat(read(path)).isEqualTo("01234567" + ContainerLogFile.TRUNCATED_MARKER);
+    }
+
+    @Test
+    public void shouldKeepEndWhenRotating() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("stdout.txt");
+        try (ContainerLogFile logFile = new ContainerLogFile(path, 8, ContainerLogFile.Policy.ROTATE)) {
+            logFile.write("0123456789abcdef");
+            logFile.write("gh");
+        }
+
+        assertThat(read(path)).isEqualTo("gh");
+        assertThat(read(path.resolveSibling("stdout.txt" + ContainerLogFile.ROTATED_SUFFIX))).isEqualTo("cdef");
+    }
+}
@@ -1,6 +1,7 @@
 package com.iexec.worker.docker;
 
 import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.executor.DeadlineTimer;
 import com.spotify.docker.client.DefaultDockerClient;
 import com.spotify.docker.client.DockerClient;
 import com.spotify.docker.client.exceptions.DockerCertificateException;
@@ -8,12 +9,15 @@ import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.ContainerConfig;
 import com.spotify.docker.client.messages.Volume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.InjectMocks;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,10 +26,12 @@ import static org.mockito.Mockito.when;
 public class CustomDockerClientTests {
 
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock
     private WorkerConfigurationService configurationService;
 
-    @InjectMocks
     private CustomDockerClient customDockerClient;
 
     private DockerClient baseDockerClient;
@@ -34,6 +40,7 @@ public class CustomDockerClientTests {
     @Before
     public void beforeEach() throws DockerCertificateException, DockerException, InterruptedException {
         MockitoAnnotations.initMocks(this);
+        customDockerClient = new CustomDockerClient(configurationService, new DeadlineTimer());
         baseDockerClient = DefaultDockerClient.fromEnv().build();
         baseDockerClient.pull("iexechub/vanityeth:latest");
         maxExecutionTime = new Date(30*1000);
@@ -250,15 +257,40 @@ public class CustomDockerClientTests {
     }
 
     @Test
-    public void shouldNotGetLogsOfEmptyTaskId() {
-        String dockerLogs = customDockerClient.getContainerLogs("");
-        assertThat(dockerLogs).isEqualTo("Failed to get logs of computation");
+    public void shouldNotFollowLogsOfEmptyTaskId() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("stdout.txt");
+        try (ContainerLogFile logFile = new ContainerLogFile(path, 1000, ContainerLogFile.Policy.TRUNCATE)) {
+            assertThat(customDockerClient.followContainerLogs("", logFile)).isFalse();
+        }
+        assertThat(path.toFile().length()).isZero();
+    }
+
+    @Test
+    public void shouldNotFollowLogsOfBadTaskId() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("stdout.txt");
+        try (ContainerLogFile logFile = new ContainerLogFile(path, 1000, ContainerLogFile.Policy.TRUNCATE)) {
+            assertThat(customDockerClient.followContainerLogs("taskId", logFile)).isFalse();
+        }
+        assertThat(path.toFile().length()).isZero();
     }
 
     @Test
-    public void shouldGetLogsOfBadTaskId() {
-        String dockerLogs = customDockerClient.getContainerLogs("taskId");
-        assertThat(dockerLogs).isEqualTo("Failed to get logs of computation");
+    public void shouldFollowLogsUntilContainerExits() throws IOException {
+        when(configurationService.getWorkerName()).thenReturn("worker1");
+        String volumeName = customDockerClient.createVolume("taskId");
+        ContainerConfig containerConfig = CustomDockerClient
+                .getContainerConfig("iexechub/vanityeth:latest", "a", volumeName);
+        customDockerClient.startContainer("taskId", containerConfig);
+        Path path = temporaryFolder.getRoot().toPath().resolve("stdout.txt");
+
+        try (ContainerLogFile logFile = new ContainerLogFile(path, 100000, ContainerLogFile.Policy.TRUNCATE)) {
+            assertThat(customDockerClient.followContainerLogs("taskId", logFile)).isTrue();
+        }
+
+        assertThat(path.toFile().length()).isPositive();
+        customDockerClient.waitContainer("taskId", maxExecutionTime);
+        customDockerClient.removeContainer("taskId");
+        customDockerClient.removeVolume("taskId");
     }
 
 
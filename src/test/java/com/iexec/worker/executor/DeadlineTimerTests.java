@@ -0,0 +1,63 @@
+package com.iexec.worker.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class DeadlineTimerTests {
+
+    private DeadlineTimer deadlineTimer;
+
+    @Before
+    public void init() {
+        // 10ms ticks, one rotation every 80ms
+        deadlineTimer = new DeadlineTimer(10, 8);
+    }
+
+    @After
+    public void tearDown() {
+        deadlineTimer.onPreDestroy();
+    }
+
+    @Test
+    public void shouldFireAtDeadline() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long deadline = System.currentTimeMillis() + 200;
+
+        DeadlineTimer.Timeout timeout = deadlineTimer.schedule(deadline, () -> {
+            firedAt.set(System.currentTimeMillis());
+            fired.countDown();
+        });
+
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt.get()).isGreaterThanOrEqualTo(deadline);
+        assertThat(timeout.isExpired()).isTrue();
+    }
+
+    @Test
+    public void shouldFirePastDeadlineRightAway() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+
+        deadlineTimer.schedule(System.currentTimeMillis() - 1000, fired::countDown);
+
+        assertThat(fired.await(200, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldNotFireCancelledTimeout() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+
+        DeadlineTimer.Timeout timeout = deadlineTimer.schedule(System.currentTimeMillis() + 50, fired::countDown);
+
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(fired.await(300, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(timeout.isExpired()).isFalse();
+    }
+}
@@ -0,0 +1,236 @@
+package com.iexec.worker.executor;
+
+import com.iexec.common.chain.ContributionAuthorization;
+import com.iexec.common.dapp.DappType;
+import com.iexec.common.replicate.AvailableReplicateModel;
+import com.iexec.worker.chain.ContributionService;
+import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.docker.DockerComputationService;
+import com.iexec.worker.feign.CustomFeignClient;
+import com.iexec.worker.result.ResultInfo;
+import com.iexec.worker.result.ResultService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static com.iexec.common.replicate.ReplicateStatus.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class TaskExecutorServiceTests {
+
+    private static final String CHAIN_TASK_ID = "0xd94b63fc2d3ec4b96daf84b403bbafdc8c8517e8e2addd51fec0fa4e67801be8";
+
+    @Mock
+    private DockerComputationService dockerComputationService;
+
+    @Mock
+    private ContributionService contributionService;
+
+    @Mock
+    private ResultService resultService;
+
+    @Mock
+    private CustomFeignClient feignClient;
+
+    @Mock
+    private DeadlineTimer deadlineTimer;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    private TaskExecutorService taskExecutorService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(workerConfigurationService.getIoPoolSize()).thenReturn(2);
+        when(contributionService.getContributionDeadline(CHAIN_TASK_ID)).thenReturn(Optional.empty());
+        taskExecutorService = new TaskExecutorService(dockerComputationService, contributionService,
+                resultService, feignClient, deadlineTimer, workerConfigurationService);
+    }
+
+    @After
+    public void tearDown() {
+        taskExecutorService.onPreDestroy();
+    }
+
+    private static AvailableReplicateModel getReplicateModel() {
+        return getReplicateModel(CHAIN_TASK_ID);
+    }
+
+    private static AvailableReplicateModel getReplicateModel(String chainTaskId) {
+        return AvailableReplicateModel.builder()
+                .contributionAuthorization(ContributionAuthorization.builder().chainTaskId(chainTaskId).build())
+                .appType(DappType.DOCKER)
+                .appUri("iexechub/vanityeth:latest")
+                .cmd("a")
+                .timeRef(new Date(60000))
+                .build();
+    }
+
+    @Test
+    public void shouldDeclineReplicateBeforeComputation() throws Exception {
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID))
+                .thenReturn(Optional.of(CANT_CONTRIBUTE_SINCE_STAKE_TOO_LOW));
+
+        // completes normally: a decline is not a failure of the replicate
+        taskExecutorService.addReplicate(getReplicateModel()).get(5, TimeUnit.SECONDS);
+
+        verify(feignClient).updateReplicateStatusAsync(CHAIN_TASK_ID, CANT_CONTRIBUTE_SINCE_STAKE_TOO_LOW);
+        verify(dockerComputationService, never()).dockerPull(anyString(), anyString());
+        verify(dockerComputationService, never()).dockerRun(any(), any());
+        verify(contributionService, never()).contribute(any(), anyString(), any());
+        assertThat(taskExecutorService.canAcceptMoreReplicate()).isTrue();
+    }
+
+    @Test
+    public void shouldNotContributeFailedComputation() throws Exception {
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID)).thenReturn(Optional.of(CAN_CONTRIBUTE));
+        when(dockerComputationService.dockerPull(anyString(), anyString())).thenReturn(true);
+        when(dockerComputationService.dockerRun(any(), any())).thenThrow(new IOException("no result"));
+
+        taskExecutorService.addReplicate(getReplicateModel()).get(5, TimeUnit.SECONDS);
+
+        verify(contributionService, never()).contribute(any(), anyString(), any());
+    }
+
+    // the pull blocks until interrupted
+    private void pullBlocksUntilInterrupted(CountDownLatch pullStarted, AtomicBoolean isPullInterrupted) {
+        when(dockerComputationService.dockerPull(anyString(), anyString())).thenAnswer(invocation -> {
+            pullStarted.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                isPullInterrupted.set(true);
+                // left set, as docker clients do
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+    }
+
+    // the run waits for the abort, then stops early like the docker service does
+    private void runWaitsForAbort(CountDownLatch runStarted) throws IOException {
+        when(dockerComputationService.dockerRun(any(), any())).thenAnswer(invocation -> {
+            BooleanSupplier isAborted = invocation.getArgument(1);
+            runStarted.countDown();
+            while (!isAborted.getAsBoolean()) {
+                Thread.sleep(10);
+            }
+            throw new IOException("Computation aborted");
+        });
+    }
+
+    @Test
+    public void shouldInterruptPullOnAbort() throws Exception {
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID)).thenReturn(Optional.of(CAN_CONTRIBUTE));
+        CountDownLatch pullStarted = new CountDownLatch(1);
+        AtomicBoolean isPullInterrupted = new AtomicBoolean();
+        pullBlocksUntilInterrupted(pullStarted, isPullInterrupted);
+
+        taskExecutorService.addReplicate(getReplicateModel());
+        assertThat(pullStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        taskExecutorService.abortReplicate(CHAIN_TASK_ID).get(5, TimeUnit.SECONDS);
+
+        assertThat(isPullInterrupted.get()).isTrue();
+        verify(dockerComputationService, never()).dockerRun(any(), any());
+        verify(contributionService, never()).contribute(any(), anyString(), any());
+    }
+
+    @Test
+    public void shouldSkipResultAndContributionOnAbortDuringComputation() throws Exception {
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID)).thenReturn(Optional.of(CAN_CONTRIBUTE));
+        when(dockerComputationService.dockerPull(anyString(), anyString())).thenReturn(true);
+        CountDownLatch runStarted = new CountDownLatch(1);
+        runWaitsForAbort(runStarted);
+
+        taskExecutorService.addReplicate(getReplicateModel());
+        assertThat(runStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        taskExecutorService.abortReplicate(CHAIN_TASK_ID).get(5, TimeUnit.SECONDS);
+
+        verify(resultService, never()).addResultInfo(anyString(), any());
+        verify(feignClient, never()).updateReplicateStatusAsync(CHAIN_TASK_ID, COMPUTED);
+        verify(contributionService, never()).contribute(any(), anyString(), any());
+    }
+
+    @Test
+    public void shouldSkipResultOfRunFinishedAfterAbort() throws Exception {
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID)).thenReturn(Optional.of(CAN_CONTRIBUTE));
+        when(dockerComputationService.dockerPull(anyString(), anyString())).thenReturn(true);
+        CountDownLatch runStarted = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        when(dockerComputationService.dockerRun(any(), any())).thenAnswer(invocation -> {
+            runStarted.countDown();
+            aborted.await(5, TimeUnit.SECONDS);
+            return ResultInfo.builder().deterministHash("0xabc").build();
+        });
+
+        CompletableFuture<Void> replicate = taskExecutorService.addReplicate(getReplicateModel());
+        assertThat(runStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Void> ended = taskExecutorService.abortReplicate(CHAIN_TASK_ID);
+        aborted.countDown();
+        ended.get(5, TimeUnit.SECONDS);
+
+        verify(resultService, never()).addResultInfo(anyString(), any());
+        verify(feignClient, never()).updateReplicateStatusAsync(CHAIN_TASK_ID, COMPUTED);
+        verify(contributionService, never()).contribute(any(), anyString(), any());
+        assertThat(replicate.isDone()).isTrue();
+    }
+
+    @Test
+    public void shouldReleaseComputeSlotOnceOnAbort() throws Exception {
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID)).thenReturn(Optional.of(CAN_CONTRIBUTE));
+        when(dockerComputationService.dockerPull(anyString(), anyString())).thenReturn(true);
+        CountDownLatch runStarted = new CountDownLatch(1);
+        runWaitsForAbort(runStarted);
+
+        taskExecutorService.addReplicate(getReplicateModel());
+        assertThat(runStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(taskExecutorService.getNbPendingComputations()).isEqualTo(1);
+        taskExecutorService.abortReplicate(CHAIN_TASK_ID).get(5, TimeUnit.SECONDS);
+
+        // released by the abort, then again (no-op) after the computation and at the end of the replicate
+        assertThat(taskExecutorService.getNbPendingComputations()).isZero();
+    }
+
+    @Test
+    public void shouldClearInterruptBeforeReusingPoolThread() throws Exception {
+        // a single I/O thread: the next replicate runs on the interrupted one
+        taskExecutorService.onPreDestroy();
+        when(workerConfigurationService.getIoPoolSize()).thenReturn(1);
+        taskExecutorService = new TaskExecutorService(dockerComputationService, contributionService,
+                resultService, feignClient, deadlineTimer, workerConfigurationService);
+        String otherChainTaskId = "0x1111111111111111111111111111111111111111111111111111111111111111";
+        when(contributionService.getCanContributeStatus(CHAIN_TASK_ID)).thenReturn(Optional.of(CAN_CONTRIBUTE));
+        CountDownLatch pullStarted = new CountDownLatch(1);
+        AtomicBoolean isPullInterrupted = new AtomicBoolean();
+        pullBlocksUntilInterrupted(pullStarted, isPullInterrupted);
+        AtomicBoolean isNextStageInterrupted = new AtomicBoolean(true);
+        when(contributionService.getCanContributeStatus(otherChainTaskId)).thenAnswer(invocation -> {
+            isNextStageInterrupted.set(Thread.currentThread().isInterrupted());
+            return Optional.empty();
+        });
+
+        taskExecutorService.addReplicate(getReplicateModel());
+        assertThat(pullStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        taskExecutorService.abortReplicate(CHAIN_TASK_ID).get(5, TimeUnit.SECONDS);
+        taskExecutorService.addReplicate(getReplicateModel(otherChainTaskId)).get(5, TimeUnit.SECONDS);
+
+        assertThat(isPullInterrupted.get()).isTrue();
+        assertThat(isNextStageInterrupted.get()).isFalse();
+    }
+}
@@ -0,0 +1,80 @@
+package com.iexec.worker.feign;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class CoreCallPolicyTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CoreCallPolicy coreCallPolicy;
+
+    @Before
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        coreCallPolicy = new CoreCallPolicy(meterRegistry);
+    }
+
+    // status 0 is an unreachable core
+    private static class StatusFeignException extends FeignException {
+        StatusFeignException(int status) {
+            super(status, "status " + status);
+        }
+    }
+
+    private String failingCall(AtomicInteger calls, int status) {
+        calls.incrementAndGet();
+        throw new StatusFeignException(status);
+    }
+
+    @Test
+    public void shouldRetryUntilSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = coreCallPolicy.execute("updateReplicateStatus", CoreCallClass.STATUS, () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new StatusFeignException(0);
+            }
+            return "ok";
+        }, () -> "fallback");
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldNotRetryClientError() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = coreCallPolicy.execute("updateReplicateStatus", CoreCallClass.STATUS,
+                () -> failingCall(calls, 400), () -> "fallback");
+
+        assertThat(result).isEqualTo("fallback");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(coreCallPolicy.isCircuitOpen("updateReplicateStatus")).isFalse();
+    }
+
+    @Test
+    public void shouldOpenCircuitAfterConsecutiveFailures() {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 7; i++) {
+            assertThat(coreCallPolicy.execute("ping", CoreCallClass.POLLING,
+                    () -> failingCall(calls, 503), () -> "fallback")).isEqualTo("fallback");
+        }
+
+        // calls after the opening are not sent
+        assertThat(calls.get()).isEqualTo(5);
+        assertThat(coreCallPolicy.isCircuitOpen("ping")).isTrue();
+        assertThat(meterRegistry.get("iexec.core.breaker.openings").tag("endpoint", "ping").counter().count())
+                .isEqualTo(1);
+        // other endpoints are not affected
+        assertThat(coreCallPolicy.execute("getAvailableReplicate", CoreCallClass.POLLING,
+                () -> "ok", () -> "fallback")).isEqualTo("ok");
+    }
+}
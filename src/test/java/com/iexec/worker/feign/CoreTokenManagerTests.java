@@ -0,0 +1,116 @@
+package com.iexec.worker.feign;
+
+import com.iexec.worker.chain.CredentialsService;
+import com.iexec.worker.security.SignatureService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.web3j.crypto.Credentials;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CoreTokenManagerTests {
+
+    private static final String PRIVATE_KEY = "0x2a46e8c1535792f6689b10d5c882c9363910c30751ec193ae71ec71630077909";
+
+    @Mock
+    private CoreWorkerClient coreWorkerClient;
+
+    @Mock
+    private CredentialsService credentialsService;
+
+    @Mock
+    private SignatureService signatureService;
+
+    private CoreTokenManager coreTokenManager;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(credentialsService.getCredentials()).thenReturn(Credentials.create(PRIVATE_KEY));
+        when(coreWorkerClient.getChallenge(anyString())).thenReturn("challenge");
+        coreTokenManager = new CoreTokenManager(coreWorkerClient, credentialsService, signatureService,
+                new CoreCallPolicy(new SimpleMeterRegistry()));
+    }
+
+    @After
+    public void tearDown() {
+        coreTokenManager.onPreDestroy();
+    }
+
+    private static String buildJwt(long expirationSeconds) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"exp\":" + expirationSeconds + "}").getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + ".signature";
+    }
+
+    @Test
+    public void shouldLoginOnceForConcurrentCallers() throws Exception {
+        CountDownLatch loginStarted = new CountDownLatch(1);
+        CountDownLatch releaseLogin = new CountDownLatch(1);
+        when(coreWorkerClient.login(anyString(), any())).thenAnswer(invocation -> {
+            loginStarted.countDown();
+            releaseLogin.await(5, TimeUnit.SECONDS);
+            return "jwt";
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        List<Future<String>> tokens = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tokens.add(callers.submit(coreTokenManager::getToken));
+        }
+        loginStarted.await(5, TimeUnit.SECONDS);
+        releaseLogin.countDown();
+
+        for (Future<String> token : tokens) {
+            assertThat(token.get(5, TimeUnit.SECONDS)).isEqualTo("Bearer jwt");
+        }
+        verify(coreWorkerClient, times(1)).login(anyString(), any());
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void shouldNotLoginAgainWhenRejectedTokenIsAlreadyRenewed() {
+        when(coreWorkerClient.login(anyString(), any())).thenReturn("jwt1", "jwt2");
+        String rejectedToken = coreTokenManager.getToken();
+
+        // two callers got a 401 with the same token
+        assertThat(coreTokenManager.renewToken(rejectedToken)).isEqualTo("Bearer jwt2");
+        assertThat(coreTokenManager.renewToken(rejectedToken)).isEqualTo("Bearer jwt2");
+
+        verify(coreWorkerClient, times(2)).login(anyString(), any());
+    }
+
+    @Test
+    public void shouldReadExpirationOfToken() {
+        long expirationSeconds = System.currentTimeMillis() / 1000 + 3600;
+
+        assertThat(coreTokenManager.getExpirationTime("Bearer " + buildJwt(expirationSeconds)))
+                .isEqualTo(expirationSeconds * 1000);
+        assertThat(coreTokenManager.getExpirationTime("Bearer opaque")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRenewTokenBeforeExpiry() {
+        // expires in 2s: renewed after 1s (half of the validity)
+        String shortLivedJwt = buildJwt(System.currentTimeMillis() / 1000 + 2);
+        when(coreWorkerClient.login(anyString(), any())).thenReturn(shortLivedJwt, "jwt");
+
+        assertThat(coreTokenManager.getToken()).isEqualTo("Bearer " + shortLivedJwt);
+
+        verify(coreWorkerClient, timeout(3000).times(2)).login(anyString(), any());
+    }
+}
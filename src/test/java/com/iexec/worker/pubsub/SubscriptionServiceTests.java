@@ -0,0 +1,161 @@
+package com.iexec.worker.pubsub;
+
+import com.iexec.common.result.TaskNotification;
+import com.iexec.common.result.TaskNotificationType;
+import com.iexec.worker.chain.ChainHeadTracker;
+import com.iexec.worker.chain.GasBalanceService;
+import com.iexec.worker.chain.IexecHubService;
+import com.iexec.worker.chain.RevealService;
+import com.iexec.worker.config.CoreConfigurationService;
+import com.iexec.worker.config.PublicConfigurationService;
+import com.iexec.worker.config.WorkerConfigurationService;
+import com.iexec.worker.executor.DeadlineTimer;
+import com.iexec.worker.executor.TaskExecutorService;
+import com.iexec.worker.feign.CustomFeignClient;
+import com.iexec.worker.feign.ResultRepoClient;
+import com.iexec.worker.result.Eip712ChallengeService;
+import com.iexec.worker.result.ResultService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.iexec.common.result.TaskNotificationType.PLEASE_REVEAL;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SubscriptionServiceTests {
+
+    private static final String WORKER_ADDRESS = "0x1a69b2eb604db8eba185df03ea4f5288dcbbd248";
+    private static final String WORKER_TOPIC = "/topic/worker/" + WORKER_ADDRESS;
+    private static final String CHAIN_TASK_ID = "0xd94b63fc2d3ec4b96daf84b403bbafdc8c8517e8e2addd51fec0fa4e67801be8";
+    private static final String TASK_TOPIC = "/topic/task/" + CHAIN_TASK_ID;
+
+    @Mock
+    private CoreConfigurationService coreConfigurationService;
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    @Mock
+    private ResultRepoClient resultRepoClient;
+
+    @Mock
+    private ResultService resultService;
+
+    @Mock
+    private RevealService revealService;
+
+    @Mock
+    private IexecHubService iexecHubService;
+
+    @Mock
+    private GasBalanceService gasBalanceService;
+
+    @Mock
+    private CustomFeignClient feignClient;
+
+    @Mock
+    private Eip712ChallengeService eip712ChallengeService;
+
+    @Mock
+    private PublicConfigurationService publicConfigurationService;
+
+    @Mock
+    private TaskNotificationExecutor taskNotificationExecutor;
+
+    @Mock
+    private ChainHeadTracker chainHeadTracker;
+
+    @Mock
+    private DeadlineTimer deadlineTimer;
+
+    @Mock
+    private TaskExecutorService taskExecutorService;
+
+    @Mock
+    private StompSession session;
+
+    private SubscriptionService subscriptionService;
+    // subscriptions returned by the session, by topic
+    private Map<String, StompSession.Subscription> subscriptions;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(coreConfigurationService.getHost()).thenReturn("localhost");
+        when(workerConfigurationService.getWorkerWalletAddress()).thenReturn(WORKER_ADDRESS);
+        when(workerConfigurationService.isWorkerTopicEnabled()).thenReturn(true);
+        subscriptions = new HashMap<>();
+        when(session.subscribe(anyString(), any())).thenAnswer(invocation -> {
+            StompSession.Subscription subscription = mock(StompSession.Subscription.class);
+            subscriptions.put(invocation.getArgument(0), subscription);
+            return subscription;
+        });
+
+        subscriptionService = new SubscriptionService(coreConfigurationService, workerConfigurationService,
+                resultRepoClient, resultService, revealService, iexecHubService, gasBalanceService, feignClient,
+                eip712ChallengeService, publicConfigurationService, taskNotificationExecutor, chainHeadTracker,
+                deadlineTimer, taskExecutorService);
+        subscriptionService.afterConnected(session, new StompHeaders());
+    }
+
+    private StompFrameHandler getFrameHandler(String topic) {
+        ArgumentCaptor<StompFrameHandler> frameHandler = ArgumentCaptor.forClass(StompFrameHandler.class);
+        verify(session).subscribe(eq(topic), frameHandler.capture());
+        return frameHandler.getValue();
+    }
+
+    private static TaskNotification getNotification(TaskNotificationType type) {
+        return TaskNotification.builder()
+                .chainTaskId(CHAIN_TASK_ID)
+                .workersAddress(Collections.emptyList())
+                .taskNotificationType(type)
+                .build();
+    }
+
+    @Test
+    public void shouldDropTaskTopicsOnFirstWorkerTopicMessage() {
+        subscriptionService.subscribeToTopic(CHAIN_TASK_ID);
+        StompSession.Subscription taskSubscription = subscriptions.get(TASK_TOPIC);
+
+        getFrameHandler(WORKER_TOPIC).handleFrame(new StompHeaders(), getNotification(PLEASE_REVEAL));
+
+        verify(taskSubscription).unsubscribe();
+        // tasks taken afterwards get no task topic
+        subscriptionService.subscribeToTopic("0xother");
+        verify(session, never()).subscribe(eq("/topic/task/0xother"), any());
+    }
+
+    @Test
+    public void shouldIgnoreDuplicateNotificationWithinWindow() {
+        subscriptionService.subscribeToTopic(CHAIN_TASK_ID);
+
+        getFrameHandler(TASK_TOPIC).handleFrame(new StompHeaders(), getNotification(PLEASE_REVEAL));
+        getFrameHandler(WORKER_TOPIC).handleFrame(new StompHeaders(), getNotification(PLEASE_REVEAL));
+
+        verify(taskNotificationExecutor, times(1)).execute(eq(CHAIN_TASK_ID), eq(PLEASE_REVEAL), any());
+    }
+
+    @Test
+    public void shouldHandleSameNotificationAfterWindow() throws InterruptedException {
+        subscriptionService.setDuplicateNotificationWindow(50);
+        subscriptionService.subscribeToTopic(CHAIN_TASK_ID);
+
+        getFrameHandler(TASK_TOPIC).handleFrame(new StompHeaders(), getNotification(PLEASE_REVEAL));
+        Thread.sleep(100);
+        getFrameHandler(WORKER_TOPIC).handleFrame(new StompHeaders(), getNotification(PLEASE_REVEAL));
+
+        verify(taskNotificationExecutor, times(2)).execute(eq(CHAIN_TASK_ID), eq(PLEASE_REVEAL), any());
+    }
+}
@@ -0,0 +1,129 @@
+package com.iexec.worker.pubsub;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.iexec.common.result.TaskNotificationType.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class TaskNotificationExecutorTests {
+
+    @Mock
+    private WorkerConfigurationService workerConfigurationService;
+
+    private TaskNotificationExecutor taskNotificationExecutor;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(workerConfigurationService.getNotificationPoolSize()).thenReturn(1);
+        taskNotificationExecutor = new TaskNotificationExecutor(workerConfigurationService);
+    }
+
+    @After
+    public void tearDown() {
+        taskNotificationExecutor.onPreDestroy();
+    }
+
+    @Test
+    public void shouldHandleAbortOfAnotherTaskBeforeUpload() throws InterruptedException {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        // occupy the single thread so that the next notifications are queued
+        taskNotificationExecutor.execute("task0", PLEASE_REVEAL, () -> {
+            awaitQuietly(blocker);
+            done.countDown();
+        });
+        taskNotificationExecutor.execute("task1", PLEASE_UPLOAD, () -> {
+            handled.add("task1-upload");
+            done.countDown();
+        });
+        taskNotificationExecutor.execute("task2", PLEASE_ABORT_CONSENSUS_REACHED, () -> {
+            handled.add("task2-abort");
+            done.countDown();
+        });
+        blocker.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("task2-abort", "task1-upload");
+    }
+
+    @Test
+    public void shouldHandleNotificationsOfSameTaskInOrder() throws InterruptedException {
+        taskNotificationExecutor.onPreDestroy();
+        when(workerConfigurationService.getNotificationPoolSize()).thenReturn(4);
+        taskNotificationExecutor = new TaskNotificationExecutor(workerConfigurationService);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        taskNotificationExecutor.execute("task1", PLEASE_REVEAL, () -> {
+            sleepQuietly(200);
+            handled.add("reveal");
+            done.countDown();
+        });
+        taskNotificationExecutor.execute("task1", PLEASE_REVEAL, () -> {
+            handled.add("reveal-again");
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("reveal", "reveal-again");
+    }
+
+    @Test
+    public void shouldNotReorderNotificationsOfSameTask() throws InterruptedException {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+
+        taskNotificationExecutor.execute("task0", PLEASE_REVEAL, () -> {
+            awaitQuietly(blocker);
+            done.countDown();
+        });
+        taskNotificationExecutor.execute("task1", PLEASE_REVEAL, () -> {
+            handled.add("task1-reveal");
+            done.countDown();
+        });
+        taskNotificationExecutor.execute("task2", PLEASE_UPLOAD, () -> {
+            handled.add("task2-upload");
+            done.countDown();
+        });
+        // moves the lane of task2 up, after its upload
+        taskNotificationExecutor.execute("task2", COMPLETED, () -> {
+            handled.add("task2-completed");
+            done.countDown();
+        });
+        blocker.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("task2-upload", "task2-completed", "task1-reveal");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.iexec.worker.result;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class ResultBlobStoreTests {
+
+    private static final String TEST_FOLDER = "/tmp/iexec-test-blobs";
+
+    @Mock
+    private WorkerConfigurationService configurationService;
+
+    @InjectMocks
+    private ResultBlobStore resultBlobStore;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        FileUtils.deleteDirectory(new File(TEST_FOLDER));
+        when(configurationService.getResultBaseDir()).thenReturn(TEST_FOLDER);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File(TEST_FOLDER));
+    }
+
+    private void createResult(String chainTaskId, String content) throws IOException {
+        File file = new File(TEST_FOLDER + "/" + chainTaskId + "/iexec/stdout.txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes());
+    }
+
+    private void storeResult(String chainTaskId) {
+        resultBlobStore.storeResult(chainTaskId, TEST_FOLDER + "/" + chainTaskId,
+                TEST_FOLDER + "/" + chainTaskId + ".zip");
+    }
+
+    @Test
+    public void shouldShareBlobBetweenIdenticalResults() throws IOException {
+        createResult("task1", "same output");
+        createResult("task2", "same output");
+        storeResult("task1");
+        storeResult("task2");
+
+        List<String> manifest1 = resultBlobStore.readManifest("task1");
+        List<String> manifest2 = resultBlobStore.readManifest("task2");
+        assertThat(manifest1).hasSize(1);
+        assertThat(manifest1).isEqualTo(manifest2);
+        // the blob and the two task files
+        assertThat(Files.getAttribute(resultBlobStore.getBlobPath(manifest1.get(0)), "unix:nlink")).isEqualTo(3);
+        assertThat(new String(Files.readAllBytes(Paths.get(TEST_FOLDER + "/task2/iexec/stdout.txt"))))
+                .isEqualTo("same output");
+    }
+
+    @Test
+    public void shouldFreeBlobWhenLastReferenceIsRemoved() throws IOException {
+        createResult("task1", "same output");
+        createResult("task2", "same output");
+        storeResult("task1");
+        storeResult("task2");
+        String hash = resultBlobStore.readManifest("task1").get(0);
+
+        FileUtils.deleteDirectory(new File(TEST_FOLDER + "/task1"));
+        resultBlobStore.releaseResult("task1");
+        assertThat(resultBlobStore.getBlobPath(hash).toFile()).exists();
+        assertThat(resultBlobStore.readManifest("task1")).isEmpty();
+
+        FileUtils.deleteDirectory(new File(TEST_FOLDER + "/task2"));
+        resultBlobStore.releaseResult("task2");
+        assertThat(resultBlobStore.getBlobPath(hash).toFile()).doesNotExist();
+    }
+
+    @Test
+    public void shouldPruneUnreferencedBlobs() throws IOException {
+        createResult("task1", "output");
+        storeResult("task1");
+        String hash = resultBlobStore.readManifest("task1").get(0);
+
+        FileUtils.deleteDirectory(new File(TEST_FOLDER + "/task1"));
+        resultBlobStore.pruneBlobs();
+        assertThat(resultBlobStore.getBlobPath(hash).toFile()).doesNotExist();
+    }
+}
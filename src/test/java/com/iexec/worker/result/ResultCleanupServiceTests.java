@@ -0,0 +1,121 @@
+package com.iexec.worker.result;
+
+import com.iexec.worker.config.WorkerConfigurationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ResultCleanupServiceTests {
+
+    private static final String TEST_FOLDER = "/tmp/iexec-test-cleanup";
+    private static final String TRASH_FOLDER = TEST_FOLDER + "/" + ResultCleanupService.TRASH_FOLDER_NAME;
+
+    @Mock
+    private WorkerConfigurationService configurationService;
+
+    @Mock
+    private ResultBlobStore resultBlobStore;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ResultCleanupService resultCleanupService;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        FileUtils.deleteDirectory(new File(TEST_FOLDER));
+        when(configurationService.getResultBaseDir()).thenReturn(TEST_FOLDER);
+        when(configurationService.getResultCleanupBatchSize()).thenReturn(2);
+        // never above the high-water mark
+        when(configurationService.getResultDiskHighWaterMark()).thenReturn(101);
+        meterRegistry = new SimpleMeterRegistry();
+        resultCleanupService = new ResultCleanupService(configurationService, resultBlobStore, meterRegistry);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File(TEST_FOLDER));
+    }
+
+    private void createResult(String chainTaskId) throws IOException {
+        File file = new File(TEST_FOLDER + "/" + chainTaskId + "/iexec/stdout.txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "output".getBytes());
+        Files.write(Paths.get(TEST_FOLDER, chainTaskId + ".zip"), "zip".getBytes());
+    }
+
+    private boolean moveToTrash(String chainTaskId) {
+        return resultCleanupService.moveToTrash(chainTaskId, TEST_FOLDER + "/" + chainTaskId,
+                TEST_FOLDER + "/" + chainTaskId + ".zip");
+    }
+
+    @Test
+    public void shouldMoveResultToTrash() throws IOException {
+        createResult("task1");
+
+        assertThat(moveToTrash("task1")).isTrue();
+
+        assertThat(new File(TEST_FOLDER + "/task1")).doesNotExist();
+        assertThat(new File(TEST_FOLDER + "/task1.zip")).doesNotExist();
+        assertThat(new File(TRASH_FOLDER).list()).hasSize(1);
+        assertThat(resultCleanupService.getBacklogSize()).isEqualTo(1);
+        assertThat(meterRegistry.find("iexec.result.trash.backlog").gauge().value()).isEqualTo(1);
+        // released once reclaimed only
+        verify(resultBlobStore, never()).releaseResult(anyString());
+    }
+
+    @Test
+    public void shouldReleaseBlobsIfNothingToMove() {
+        assertThat(moveToTrash("task1")).isFalse();
+
+        assertThat(resultCleanupService.getBacklogSize()).isZero();
+        verify(resultBlobStore).releaseResult("task1");
+    }
+
+    @Test
+    public void shouldReclaimTrashInBatches() throws IOException {
+        for (String chainTaskId : new String[]{"task1", "task2", "task3"}) {
+            createResult(chainTaskId);
+            moveToTrash(chainTaskId);
+        }
+
+        resultCleanupService.reclaim();
+
+        assertThat(resultCleanupService.getBacklogSize()).isEqualTo(1);
+        assertThat(new File(TRASH_FOLDER).list()).hasSize(1);
+        verify(resultBlobStore).releaseResult("task1");
+        verify(resultBlobStore).releaseResult("task2");
+
+        resultCleanupService.reclaim();
+
+        assertThat(resultCleanupService.getBacklogSize()).isZero();
+        assertThat(new File(TRASH_FOLDER).list()).isEmpty();
+        verify(resultBlobStore).releaseResult("task3");
+    }
+
+    @Test
+    public void shouldRecoverTrashLeftByPreviousRun() throws IOException {
+        new File(TRASH_FOLDER + "/0xabc-123456/0xabc").mkdirs();
+
+        resultCleanupService.recoverTrash();
+
+        assertThat(resultCleanupService.getBacklogSize()).isEqualTo(1);
+
+        resultCleanupService.reclaim();
+
+        assertThat(new File(TRASH_FOLDER + "/0xabc-123456")).doesNotExist();
+        verify(resultBlobStore).releaseResult("0xabc");
+    }
+}
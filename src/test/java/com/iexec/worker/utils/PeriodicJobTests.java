@@ -0,0 +1,94 @@
+package com.iexec.worker.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class PeriodicJobTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PeriodicJob periodicJob;
+
+    @Before
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @After
+    public void stop() {
+        if (periodicJob != null) {
+            periodicJob.stop();
+        }
+    }
+
+    private static void sleep(long duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void shouldKeepRunningAfterFailure() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(2);
+        periodicJob = new PeriodicJob("failing", 10, () -> {
+            runs.countDown();
+            throw new IllegalStateException("core unreachable");
+        }, meterRegistry);
+
+        periodicJob.start();
+
+        assertThat(runs.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldKeepRunningAfterError() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(2);
+        periodicJob = new PeriodicJob("erroring", 10, () -> {
+            runs.countDown();
+            throw new NoClassDefFoundError("missing class");
+        }, meterRegistry);
+
+        periodicJob.start();
+
+        assertThat(runs.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldSkipRunsMissedByOverrun() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch runs = new CountDownLatch(2);
+        periodicJob = new PeriodicJob("slow", 20, () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(70);
+            running.decrementAndGet();
+            runs.countDown();
+        }, meterRegistry);
+
+        periodicJob.start();
+
+        assertThat(runs.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("iexec.job.overruns", "job", "slow").count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecordScheduleLag() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(3);
+        periodicJob = new PeriodicJob("ping", 10, runs::countDown, meterRegistry);
+
+        periodicJob.start();
+
+        assertThat(runs.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.timer("iexec.job.lag", "job", "ping").count()).isGreaterThanOrEqualTo(3);
+    }
+}
@@ -0,0 +1,46 @@
+package com.iexec.worker.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ReconnectBackoffTests {
+
+    @Test
+    public void shouldDoubleDelayUpToMax() {
+        ReconnectBackoff backoff = new ReconnectBackoff(1000, 4000);
+
+        long[] ceilings = {1000, 2000, 4000, 4000};
+        for (long ceiling : ceilings) {
+            long delay = backoff.nextDelay();
+            assertThat(delay).isBetween(ceiling / 2, ceiling);
+            backoff.onReconnect();
+        }
+        assertThat(backoff.getAttempts()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldScheduleOneReconnectionAtATime() {
+        ReconnectBackoff backoff = new ReconnectBackoff(1000, 4000);
+
+        assertThat(backoff.nextDelay()).isNotNegative();
+        assertThat(backoff.nextDelay()).isEqualTo(-1);
+
+        backoff.onReconnect();
+
+        assertThat(backoff.nextDelay()).isNotNegative();
+    }
+
+    @Test
+    public void shouldRestartFromInitialDelayOnceConnected() {
+        ReconnectBackoff backoff = new ReconnectBackoff(1000, 4000);
+        for (int i = 0; i < 3; i++) {
+            backoff.nextDelay();
+            backoff.onReconnect();
+        }
+
+        backoff.reset();
+
+        assertThat(backoff.nextDelay()).isBetween(500L, 1000L);
+    }
+}